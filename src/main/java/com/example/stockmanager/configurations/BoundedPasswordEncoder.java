@@ -0,0 +1,127 @@
+package com.example.stockmanager.configurations;
+
+import com.example.stockmanager.exceptions.ServiceBusyException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the wrapped encoder's hashing and matching on a small fixed pool instead of the request thread, so a burst
+ * of logins cannot take every core away from the sales endpoints. Work beyond the pool and its bounded queue is
+ * refused right away with a {@link ServiceBusyException} (503) rather than piling up.
+ * <p>
+ * Hash time and queue wait are counted here and logged every {@code security.password-hashing.metrics-log-interval}.
+ */
+@Slf4j
+public class BoundedPasswordEncoder implements PasswordEncoder, AutoCloseable {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+
+    private final LongAdder hashes = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    private final AtomicLong maxHashNanos = new AtomicLong();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+    private final LongAdder rejected = new LongAdder();
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int maxQueued) {
+        this.delegate = delegate;
+        // never a hand-off queue: that refuses work in the moment a thread is between two hashes
+        BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(Math.max(1, maxQueued));
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, queue, task -> {
+            Thread thread = new Thread(task, "password-hash-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T run(Callable<T> work) {
+        long submitted = System.nanoTime();
+        Future<T> result;
+        try {
+            result = executor.submit(() -> {
+                long started = System.nanoTime();
+                record(queueWaitNanos, maxQueueWaitNanos, started - submitted);
+                try {
+                    return work.call();
+                } finally {
+                    hashes.increment();
+                    record(hashNanos, maxHashNanos, System.nanoTime() - started);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ServiceBusyException("Too many sign-ins are in progress, please try again in a moment.");
+        }
+
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ServiceBusyException("Password check was interrupted, please try again.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public int queued() {
+        return executor.getQueue().size();
+    }
+
+    private static void record(LongAdder total, AtomicLong max, long nanos) {
+        total.add(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    @Scheduled(fixedDelayString = "${security.password-hashing.metrics-log-interval:PT5M}")
+    void logMetrics() {
+        long count = hashes.sumThenReset();
+        long refused = rejected.sumThenReset();
+        long hashTotal = hashNanos.sumThenReset();
+        long waitTotal = queueWaitNanos.sumThenReset();
+        long hashMax = maxHashNanos.getAndSet(0);
+        long waitMax = maxQueueWaitNanos.getAndSet(0);
+        if (count == 0 && refused == 0) return;
+        log.info("Password hashing: {} done, {} refused; hash avg {} ms max {} ms; queue wait avg {} ms max {} ms; {} queued now",
+                count, refused,
+                count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(hashTotal / count), TimeUnit.NANOSECONDS.toMillis(hashMax),
+                count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(waitTotal / count), TimeUnit.NANOSECONDS.toMillis(waitMax),
+                queued());
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.stockmanager.configurations;
+
+import com.example.stockmanager.responses.GenericResponse;
+import com.example.stockmanager.services.Impl.IdempotencyStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Honours the {@code Idempotency-Key} header on the sales and stock writes. The first request with a key runs and
+ * its response is stored; a retry of the same request gets that response back, marked {@code Idempotent-Replayed},
+ * without running again. Keys are scoped to the caller and the endpoint.
+ * <p>
+ * A retry that arrives while the first request is still running gets 409. A first request that never finished,
+ * because it was cut off by a crash or could not store its response, holds the key for {@code idempotency.lease}
+ * only; a retry after that runs the write again. The same key sent with a different request gets 422. Only
+ * successful responses are stored, a failed write changed nothing and may run again. Multipart uploads are not
+ * covered.
+ */
+@Component
+@RequiredArgsConstructor
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final String CSRF_PARAMETER = "_csrf";
+
+    private final IdempotencyStore idempotencyStore;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        String contentType = request.getContentType();
+        return request.getHeader(KEY_HEADER) == null
+                || SAFE_METHODS.contains(request.getMethod())
+                || !(path.startsWith("/api/v1/sales/") || path.startsWith("/api/v1/stock/"))
+                || (contentType != null && contentType.startsWith(MediaType.MULTIPART_FORM_DATA_VALUE));
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request,
+                                    @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain)
+            throws ServletException, IOException {
+
+        String key = request.getHeader(KEY_HEADER);
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            reject(response, HttpStatus.BAD_REQUEST, KEY_HEADER + " must be between 1 and " + MAX_KEY_LENGTH + " characters.");
+            return;
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String caller = authentication == null ? "" : authentication.getName();
+        CachedBodyRequest cachedRequest = new CachedBodyRequest(request);
+        String id = sha256(caller, request.getMethod(), request.getRequestURI(), key);
+        String requestHash = sha256(parameters(request), new String(cachedRequest.body, StandardCharsets.UTF_8));
+
+        IdempotencyStore.StoredResponse stored = idempotencyStore.find(id);
+        UUID reservation = stored == null ? idempotencyStore.reserve(id, requestHash) : null;
+        if (reservation != null) {
+            execute(id, reservation, cachedRequest, response, filterChain);
+            return;
+        }
+        if (stored == null) {
+            // another request reserved it meanwhile
+            stored = idempotencyStore.find(id);
+        }
+        if (stored != null && !stored.requestHash().equals(requestHash)) {
+            reject(response, HttpStatus.UNPROCESSABLE_ENTITY, "This " + KEY_HEADER + " was already used for a different request.");
+        } else if (stored == null || !stored.completed()) {
+            reject(response, HttpStatus.CONFLICT, "A request with this " + KEY_HEADER + " is still being processed.");
+        } else {
+            replay(stored, response);
+        }
+    }
+
+    private void execute(String id, UUID reservation, HttpServletRequest request, HttpServletResponse response,
+                         FilterChain filterChain) throws ServletException, IOException {
+        ContentCachingResponseWrapper captured = new ContentCachingResponseWrapper(response);
+        boolean succeeded = false;
+        try {
+            filterChain.doFilter(request, captured);
+            succeeded = HttpStatus.valueOf(captured.getStatus()).is2xxSuccessful();
+        } finally {
+            if (!succeeded) idempotencyStore.release(id, reservation);
+        }
+        // should this fail, the key stays reserved until its lease runs out
+        idempotencyStore.complete(id, reservation, captured.getStatus(), captured.getContentType(),
+                new String(captured.getContentAsByteArray(), StandardCharsets.UTF_8));
+        captured.copyBodyToResponse();
+    }
+
+    private void replay(IdempotencyStore.StoredResponse stored, HttpServletResponse response) throws IOException {
+        byte[] body = stored.body() == null ? new byte[0] : stored.body().getBytes(StandardCharsets.UTF_8);
+        response.setStatus(stored.status());
+        if (stored.contentType() != null) response.setContentType(stored.contentType());
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new GenericResponse<>(message, null));
+    }
+
+    // the request parameters in a fixed order, leaving out the CSRF token, which differs on every attempt
+    private static String parameters(HttpServletRequest request) {
+        StringBuilder parameters = new StringBuilder();
+        new TreeMap<>(request.getParameterMap()).forEach((name, values) -> {
+            if (!CSRF_PARAMETER.equals(name)) {
+                parameters.append(name).append('=').append(String.join(",", values)).append('&');
+            }
+        });
+        return parameters.toString();
+    }
+
+    private static String sha256(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                digest.update(part.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // the body is read up front to fingerprint the request, and handed on from memory
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            this.body = request.getInputStream().readAllBytes();
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return in.read(buffer, offset, length);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding)));
+        }
+    }
+}
@@ -1,28 +1,39 @@
 package com.example.stockmanager.configurations;
 
+import com.example.stockmanager.entities.Users;
 import com.example.stockmanager.services.Impl.JwtServiceImpl;
+import com.example.stockmanager.services.Impl.TokenPrincipal;
+import com.example.stockmanager.services.Impl.TokenVersions;
+import com.example.stockmanager.services.Impl.UserPrincipalCache;
+import com.example.stockmanager.services.Impl.VerifiedToken;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.UUID;
 
 @Component
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtServiceImpl jwtServiceImpl;
-    private final UserDetailsService userDetailsService;
+    private final UserPrincipalCache userPrincipalCache;
+    private final TokenVersions tokenVersions;
+
+    // build the principal from the token's uid and role claims instead of loading the user on every request
+    @Value("${jwt.stateless-principal:true}")
+    private boolean statelessPrincipal;
 
     @Override
     protected void doFilterInternal(@NonNull HttpServletRequest request,
@@ -39,10 +50,15 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         jwt = authHeader.substring(7);
-        userEmail = jwtServiceImpl.extractUsername(jwt);
+        // parsed and verified once, the claims are reused for the checks below
+        VerifiedToken token = jwtServiceImpl.verify(jwt);
+        userEmail = token.subject();
         if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
-            if (jwtServiceImpl.isTokenValid(jwt, userDetails)) {
+            UserDetails userDetails = statelessPrincipal ? token.principal() : null;
+            if (userDetails == null) {
+                userDetails = userPrincipalCache.load(userEmail);
+            }
+            if (jwtServiceImpl.isTokenValid(token, userDetails) && isCurrentVersion(token, userDetails)) {
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
                 authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(authToken);
@@ -50,4 +66,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
         filterChain.doFilter(request, response);
     }
+
+    // tokens issued before the user's last password change, role change or deletion are left unauthenticated
+    private boolean isCurrentVersion(VerifiedToken token, UserDetails userDetails) {
+        UUID userId = userDetails instanceof TokenPrincipal principal ? principal.id() : ((Users) userDetails).getId();
+        return tokenVersions.isCurrent(userId, token.tokenVersion());
+    }
 }
@@ -0,0 +1,58 @@
+package com.example.stockmanager.configurations;
+
+import com.example.stockmanager.entities.Stock;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Hibernate's second-level cache, held in process by Caffeine behind JCache. Every region is created here with
+ * a bound on its entries, and Hibernate is told to fail rather than quietly create an unbounded one.
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(
+            @Value("${cache.stock.max-entries:10000}") long stockEntries,
+            @Value("${cache.stock.ttl:PT1H}") Duration stockTtl,
+            @Value("${cache.queries.max-entries:2000}") long queryEntries,
+            @Value("${cache.queries.ttl:PT10M}") Duration queryTtl) {
+        // a manager of its own per application context, so contexts sharing a JVM never share regions
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("stock-manager-" + UUID.randomUUID()), getClass().getClassLoader());
+        cacheManager.createCache(Stock.CACHE_REGION, bounded(stockEntries, stockTtl));
+        cacheManager.createCache(Stock.NATURAL_ID_CACHE_REGION, bounded(stockEntries, stockTtl));
+        cacheManager.createCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME, bounded(queryEntries, queryTtl));
+        // one entry per table and never evicted: losing one would let a cached query result outlive a write
+        cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, new CaffeineConfiguration<>().setStoreByValue(false));
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> {
+            properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+
+    private static CaffeineConfiguration<Object, Object> bounded(long maxEntries, Duration ttl) {
+        return new CaffeineConfiguration<>()
+                .setStoreByValue(false)
+                .setMaximumSize(OptionalLong.of(maxEntries))
+                .setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+    }
+}
@@ -37,6 +37,8 @@ public class SecurityConfig {
                         .requestMatchers("/api/v1/users/**").hasAnyAuthority("ADMIN", "USER")
                         .requestMatchers("/api/v1/stock/**").hasAnyAuthority("ADMIN","USER")
                         .requestMatchers("/api/v1/sales/**").hasAnyAuthority("ADMIN","USER")
+                        .requestMatchers("/api/v1/dashboard/**").hasAnyAuthority("ADMIN","USER")
+                        .requestMatchers("/api/v1/stream/**").hasAnyAuthority("ADMIN","USER")
                         .anyRequest()
                         .authenticated())
                 .exceptionHandling(ex -> ex
@@ -0,0 +1,110 @@
+package com.example.stockmanager.configurations;
+
+import com.example.stockmanager.entities.Stock;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cache.spi.TimestampsCache;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Keeps the second-level cache right for the stock writes Hibernate never sees: the plain JDBC statements of the
+ * stock repository and the changes other nodes commit. Hibernate keeps it right for everything else.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StockCache {
+
+    private static final String[] QUERY_SPACES = {"stock"};
+    private static final List<String> REGIONS = List.of(
+            Stock.CACHE_REGION, Stock.NATURAL_ID_CACHE_REGION, RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME);
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // one row's quantity changed
+    public void changed(UUID id) {
+        invalidate(() -> cache().evictEntityData(Stock.class, id));
+    }
+
+    // one row was deleted, so its lookup key may now resolve to nothing or to a new row
+    public void removed(UUID id) {
+        invalidate(() -> {
+            cache().evictEntityData(Stock.class, id);
+            cache().evictNaturalIdData(Stock.class);
+        });
+    }
+
+    // any number of rows changed
+    public void changedAll() {
+        invalidate(() -> cache().evictEntityData(Stock.class));
+    }
+
+    // a transaction committed on another node, nothing cached here can be trusted any more
+    public void evictAll() {
+        Cache cache = cache();
+        cache.evictEntityData(Stock.class);
+        cache.evictNaturalIdData(Stock.class);
+        cache.evictQueryRegions();
+    }
+
+    /*
+     * Evicts right away, so the rest of the transaction reads the new rows, and again once it completes, in case a
+     * concurrent reader put back the rows as they stood before the commit. The query timestamps are moved the same
+     * way Hibernate moves them for its own bulk statements.
+     */
+    private void invalidate(Runnable evict) {
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        TimestampsCache timestamps = session.getFactory().getCache().getTimestampsCache();
+        timestamps.preInvalidate(QUERY_SPACES, session);
+        evict.run();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            timestamps.invalidate(QUERY_SPACES, session);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                evict.run();
+                timestamps.invalidate(QUERY_SPACES, session);
+            }
+        });
+    }
+
+    private Cache cache() {
+        return entityManagerFactory.getCache().unwrap(Cache.class);
+    }
+
+    @Scheduled(fixedDelayString = "${cache.statistics.log-interval:PT5M}")
+    void logStatistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        if (!statistics.isStatisticsEnabled()) return;
+        for (String region : REGIONS) {
+            CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+            if (regionStatistics == null) continue;
+            long hits = regionStatistics.getHitCount();
+            long misses = regionStatistics.getMissCount();
+            if (hits + misses == 0) continue;
+            log.info("Cache region {}: {} hits, {} misses ({}% hit), {} puts, {} entries",
+                    region, hits, misses, hits * 100 / (hits + misses),
+                    regionStatistics.getPutCount(), regionStatistics.getElementCountInMemory());
+        }
+    }
+}
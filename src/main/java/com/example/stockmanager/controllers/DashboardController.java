@@ -0,0 +1,37 @@
+package com.example.stockmanager.controllers;
+
+import com.example.stockmanager.dtos.DashboardDto;
+import com.example.stockmanager.responses.GenericResponse;
+import com.example.stockmanager.services.DashboardServices;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@Tag(name = "Dashboard Controller", description = "Handles the front page")
+@RestController
+@AllArgsConstructor
+@RequestMapping("/api/v1/dashboard")
+@PreAuthorize("hasAnyAuthority('USER', 'ADMIN')")
+public class DashboardController {
+
+    private final DashboardServices dashboardService;
+
+    @Operation(
+            summary = "Dashboard",
+            description = "Stock totals, the 10 most recent sales and, for admins, the list of containers in one call"
+    )
+    @GetMapping
+    public ResponseEntity<GenericResponse<DashboardDto.ViewDashboardDto>> dashboard(Authentication authentication) {
+        boolean isAdmin = authentication.getAuthorities().stream()
+                .anyMatch(authority -> "ADMIN".equals(authority.getAuthority()));
+        var dashboard = dashboardService.getDashboard(isAdmin);
+        return ResponseEntity.status(HttpStatus.OK).body(new GenericResponse<>("Dashboard", dashboard));
+    }
+}
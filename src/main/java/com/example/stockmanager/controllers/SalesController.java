@@ -1,9 +1,14 @@
 package com.example.stockmanager.controllers;
 
+import com.example.stockmanager.dtos.CursorPageDto;
 import com.example.stockmanager.dtos.PageDto;
 import com.example.stockmanager.dtos.SalesDto.SalesDateDto;
 import com.example.stockmanager.dtos.SalesDto;
+import com.example.stockmanager.dtos.SliceDto;
+import com.example.stockmanager.dtos.StockDto;
 import com.example.stockmanager.responses.GenericResponse;
+import com.example.stockmanager.services.DataVersionServices;
+import com.example.stockmanager.services.DataVersionServices.Table;
 import com.example.stockmanager.services.SalesServices;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -15,6 +20,7 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.UUID;
@@ -27,6 +33,7 @@ import java.util.UUID;
 public class SalesController {
 
     private SalesServices salesService;
+    private DataVersionServices dataVersions;
 
     @Operation(summary = "Add Sales", description = "Endpoint to Add Sales")
     @PostMapping("/add")
@@ -35,9 +42,17 @@ public class SalesController {
         return ResponseEntity.status(HttpStatus.CREATED).body(new GenericResponse<>("Sales Added successfully!", sales));
     }
 
+    @Operation(summary = "Add Sales Receipt", description = "Adds every line of a receipt in one transaction: all of them are sold, or none is and the lines that could not be are listed")
+    @PostMapping("/batch")
+    public ResponseEntity<GenericResponse<List<SalesDto.ViewSalesDto>>> addSalesBatch(@Valid @RequestBody SalesDto.AddSalesBatchDto batch) {
+        var sales = salesService.addSalesBatch(batch);
+        return ResponseEntity.status(HttpStatus.CREATED).body(new GenericResponse<>("Sales Added successfully!", sales));
+    }
+
     @Operation(summary = "View Recent Sales", description = "View Recent Sales for the front page")
     @GetMapping("/recent") // returns a list of 10 recent sales
-    public ResponseEntity<GenericResponse<List<SalesDto.ViewSalesDto>>> recentSales() {
+    public ResponseEntity<GenericResponse<List<SalesDto.ViewSalesDto>>> recentSales(WebRequest request) {
+        if (dataVersions.notModified(request, Table.SALES)) return null;
         var sales = salesService.recentSales();
         return ResponseEntity.status(HttpStatus.OK).body(new GenericResponse<>(" 10 Recent Sales", sales));
     }
@@ -49,6 +64,26 @@ public class SalesController {
         return ResponseEntity.status(HttpStatus.OK).body(new GenericResponse<>("All Sales in the Database", sales));
     }
 
+    @Operation(summary = "View All Sales without count", description = "Same listing as View All Sales with hasNext instead of totals, for infinite scroll")
+    @GetMapping(value = "/all", params = "slice=true")
+    public ResponseEntity<GenericResponse<SliceDto<SalesDto.ViewSalesDto>>> viewAllSalesSlice(PageDto pageDto) {
+        var sales = salesService.viewSalesSlice(pageDto);
+        return ResponseEntity.status(HttpStatus.OK).body(new GenericResponse<>("All Sales in the Database", sales));
+    }
+
+    @Operation(
+            summary = "View All Sales by cursor",
+            description = "Keyset pagination, newest first. Send an empty cursor for the first page, then the nextCursor of the previous page."
+    )
+    @GetMapping(value = "/all", params = "cursor")
+    public ResponseEntity<GenericResponse<CursorPageDto<SalesDto.ViewSalesDto>>> viewAllSalesByCursor(
+            @RequestParam(defaultValue = "") String cursor,
+            @RequestParam(required = false) Integer size
+    ) {
+        var sales = salesService.viewSalesByCursor(cursor, size);
+        return ResponseEntity.status(HttpStatus.OK).body(new GenericResponse<>("All Sales in the Database", sales));
+    }
+
     @Operation(
             summary = "Filter Sales by Date",
             description = "Provide optional startDate/endDate and pagination to retrieve filtered sales."
@@ -62,6 +97,31 @@ public class SalesController {
                 .body(new GenericResponse<>("Filtered sales", sales));
     }
 
+    @Operation(summary = "Filter Sales by Date without count", description = "Same filter as above with hasNext instead of totals")
+    @PostMapping(value = "/filter", params = "slice=true", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<GenericResponse<SliceDto<SalesDto.ViewSalesDto>>> salesFilterSlice(
+            @Valid @RequestBody SalesDateDto dateDto
+    ) {
+        var sales = salesService.viewSalesFilteredSlice(dateDto);
+        return ResponseEntity.status(HttpStatus.OK)
+                .body(new GenericResponse<>("Filtered sales", sales));
+    }
+
+    @Operation(
+            summary = "Filter Sales by Date by cursor",
+            description = "Same filter as above with keyset pagination; page is ignored, size applies. " +
+                    "Send an empty cursor for the first page, then the nextCursor of the previous page."
+    )
+    @PostMapping(value = "/filter", params = "cursor", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<GenericResponse<CursorPageDto<SalesDto.ViewSalesDto>>> salesFilterByCursor(
+            @Valid @RequestBody SalesDateDto dateDto,
+            @RequestParam(defaultValue = "") String cursor
+    ) {
+        var sales = salesService.viewSalesFilteredByCursor(dateDto, cursor);
+        return ResponseEntity.status(HttpStatus.OK)
+                .body(new GenericResponse<>("Filtered sales", sales));
+    }
+
     @Operation(summary = "Get the Item Name", description = "Get the Item name with the Item Code")
     @GetMapping(value = "/article/name")
     public ResponseEntity<GenericResponse<String>> getArticleName(@RequestParam String articleCode) {
@@ -70,6 +130,16 @@ public class SalesController {
 
     }
 
+    @Operation(summary = "Look up an article", description = "Stock lines with the given article code, or else the given name, with their quantity in stock")
+    @GetMapping(value = "/article")
+    public ResponseEntity<GenericResponse<List<StockDto.ViewStockDto>>> findArticles(
+            @RequestParam(required = false) String code,
+            @RequestParam(required = false) String name
+    ) {
+        var articles = salesService.findArticles(code, name);
+        return ResponseEntity.status(HttpStatus.OK).body(new GenericResponse<>("Articles", articles));
+    }
+
     @Operation(summary = "Delete sales", description = "Delete Sales and Add back to stock")
     @PreAuthorize("hasAuthority('ADMIN')")
     @DeleteMapping("/{id}")
@@ -1,9 +1,14 @@
 package com.example.stockmanager.controllers;
 
+import com.example.stockmanager.dtos.ImportJobDto;
 import com.example.stockmanager.dtos.PageDto;
+import com.example.stockmanager.dtos.SliceDto;
 import com.example.stockmanager.dtos.StockDto;
 import com.example.stockmanager.entities.ContainerWeights;
 import com.example.stockmanager.responses.GenericResponse;
+import com.example.stockmanager.services.DataVersionServices;
+import com.example.stockmanager.services.DataVersionServices.Table;
+import com.example.stockmanager.services.ImportJobServices;
 import com.example.stockmanager.services.StockServices;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -15,6 +20,7 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
@@ -28,11 +34,14 @@ import java.util.UUID;
 public class StockController {
 
     private final StockServices stockService;
+    private final ImportJobServices importJobService;
+    private final DataVersionServices dataVersions;
 
     // total stock of all the bales
     @Operation(summary = "Total of Stock", description = "View the total number of Stock")
     @GetMapping("/total")
-    public ResponseEntity<GenericResponse<Integer>> viewTotalStock() {
+    public ResponseEntity<GenericResponse<Integer>> viewTotalStock(WebRequest request) {
+        if (dataVersions.notModified(request, Table.STOCK)) return null;
         var totalStock = stockService.getTotalStock();
         return ResponseEntity.status(HttpStatus.OK).body(new GenericResponse<>("This is the total Stock Number", totalStock));
     }
@@ -40,7 +49,8 @@ public class StockController {
     // total stock of the 75KG Bales
     @Operation(summary = "75KG total stock", description = "View the total stock number of the 75KGs")
     @GetMapping("/75KG")
-    public ResponseEntity<GenericResponse<Integer>> view75Stock() {
+    public ResponseEntity<GenericResponse<Integer>> view75Stock(WebRequest request) {
+        if (dataVersions.notModified(request, Table.STOCK)) return null;
         var stock = stockService.get75Stock();
         return ResponseEntity.status(HttpStatus.OK).body(new GenericResponse<>("This is the total Stock Number for 75KG", stock));
     }
@@ -48,7 +58,8 @@ public class StockController {
     // total Stock of the 45KG Bales
     @Operation(summary = "45KG total stock", description = "View the total stock number of the 45KGs")
     @GetMapping("/45KG")
-    public ResponseEntity<GenericResponse<Integer>> view45Stock() {
+    public ResponseEntity<GenericResponse<Integer>> view45Stock(WebRequest request) {
+        if (dataVersions.notModified(request, Table.STOCK)) return null;
         var stock = stockService.get45Stock();
         return ResponseEntity.status(HttpStatus.OK).body(new GenericResponse<>("This is the total Stock Number for 45KG", stock));
     }
@@ -56,18 +67,36 @@ public class StockController {
     // total Bags of the Bales
     @Operation(summary = "Bags Stock", description = "View the total stock number of the bags")
     @GetMapping("/bags")
-    public ResponseEntity<GenericResponse<Integer>> viewBagStock() {
+    public ResponseEntity<GenericResponse<Integer>> viewBagStock(WebRequest request) {
+        if (dataVersions.notModified(request, Table.STOCK)) return null;
         var stock = stockService.getBagStock();
         return ResponseEntity.status(HttpStatus.OK).body(new GenericResponse<>("This is the total Stock Number for Bags", stock));
     }
 
     @Operation(summary = "View Stock", description = "View all the stock, Item by Item")
     @GetMapping("/view/stock")
-    public ResponseEntity<GenericResponse<Page<StockDto.ViewStockDto>>> viewStock(PageDto pageable, @RequestParam(required = false) ContainerWeights weight, @RequestParam(required = false) String containerName) {
+    public ResponseEntity<GenericResponse<Page<StockDto.ViewStockDto>>> viewStock(PageDto pageable, @RequestParam(required = false) ContainerWeights weight, @RequestParam(required = false) String containerName, WebRequest request) {
+        if (dataVersions.notModified(request, Table.STOCK)) return null;
         var stock = stockService.viewStockFilter(pageable, weight, containerName);
         return ResponseEntity.status(HttpStatus.OK).body(new GenericResponse<>("This is the current stock", stock));
     }
 
+    @Operation(summary = "View Stock without count", description = "Same listing as View Stock with hasNext instead of totals, for infinite scroll")
+    @GetMapping(value = "/view/stock", params = "slice=true")
+    public ResponseEntity<GenericResponse<SliceDto<StockDto.ViewStockDto>>> viewStockSlice(PageDto pageable, @RequestParam(required = false) ContainerWeights weight, @RequestParam(required = false) String containerName, WebRequest request) {
+        if (dataVersions.notModified(request, Table.STOCK)) return null;
+        var stock = stockService.viewStockFilterSlice(pageable, weight, containerName);
+        return ResponseEntity.status(HttpStatus.OK).body(new GenericResponse<>("This is the current stock", stock));
+    }
+
+    @Operation(summary = "Search Stock", description = "Stock lines whose code, name or container match every word of the query, by prefix or with a typo, best matches first")
+    @GetMapping("/search")
+    public ResponseEntity<GenericResponse<List<StockDto.ViewStockDto>>> searchStock(@RequestParam String q, @RequestParam(required = false) Integer limit, WebRequest request) {
+        if (dataVersions.notModified(request, Table.STOCK)) return null;
+        var stock = stockService.search(q, limit);
+        return ResponseEntity.status(HttpStatus.OK).body(new GenericResponse<>("These are the matching stock items", stock));
+    }
+
     // Endpoint for Adding Stock
     @Operation(summary = "Add Stock Item", description = "Endpoint for Adding Stock Item By Item")
     @PreAuthorize("hasAuthority('ADMIN')")
@@ -81,7 +110,8 @@ public class StockController {
     @Operation(summary = "List of Containers", description = "Get List Of Containers registered")
     @PreAuthorize("hasAuthority('ADMIN')")
     @GetMapping("/distinct/containers")
-    public ResponseEntity<GenericResponse<List<String>>> distinctContainers() {
+    public ResponseEntity<GenericResponse<List<String>>> distinctContainers(WebRequest request) {
+        if (dataVersions.notModified(request, Table.STOCK)) return null;
         var distinctContainer = stockService.findAllContainers();
         return ResponseEntity.status(HttpStatus.OK).body(new GenericResponse<>("These are the Stored Containers", distinctContainer));
     }
@@ -99,6 +129,27 @@ public class StockController {
                 .body(new GenericResponse<>("Stock upload completed", processedRows));
     }
 
+    @Operation(
+            summary = "Import Stock via Excel in the background",
+            description = "Accepts the same .xlsx file as the upload endpoint and returns immediately with an import job. " +
+                    "Poll the job to follow the rows parsed and applied and to get the final result."
+    )
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<GenericResponse<ImportJobDto.ViewImportJobDto>> importStockFile(@RequestParam("file") MultipartFile file) {
+        var job = importJobService.submitStockImport(file);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(new GenericResponse<>("Stock import accepted", job));
+    }
+
+    @Operation(summary = "Stock Import Progress", description = "View the progress or the result of a background stock import")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @GetMapping("/import/{jobId}")
+    public ResponseEntity<GenericResponse<ImportJobDto.ViewImportJobDto>> importJob(@PathVariable UUID jobId) {
+        var job = importJobService.getJob(jobId);
+        return ResponseEntity.status(HttpStatus.OK).body(new GenericResponse<>("Stock import job", job));
+    }
+
     @Operation(
             summary = "Update Stock Item",
             description = "Update any combination of stock fields: code, name, quantity, container_name, weight. " +
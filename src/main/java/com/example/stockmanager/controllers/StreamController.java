@@ -0,0 +1,31 @@
+package com.example.stockmanager.controllers;
+
+import com.example.stockmanager.services.StreamServices;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.AllArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@Tag(name = "Stream Controller", description = "Pushes live stock and sales changes")
+@RestController
+@AllArgsConstructor
+@RequestMapping("/api/v1/stream")
+@PreAuthorize("hasAnyAuthority('USER', 'ADMIN')")
+public class StreamController {
+
+    private final StreamServices streamService;
+
+    @Operation(
+            summary = "Live updates",
+            description = "Server-Sent Events: STOCK_*, SALE_* and TOTALS events as changes are committed, instead of polling the listings"
+    )
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream() {
+        return streamService.subscribe();
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.stockmanager.controllers;
 
 import com.example.stockmanager.dtos.PageDto;
+import com.example.stockmanager.dtos.SliceDto;
 import com.example.stockmanager.dtos.UserDto;
 import com.example.stockmanager.entities.Role;
 import com.example.stockmanager.responses.GenericResponse;
@@ -64,4 +65,11 @@ public class UserController {
         var users = userService.viewAllUsers(pageDto);
         return ResponseEntity.status(HttpStatus.OK).body(new GenericResponse<>("All Stored users",  users));
     }
+
+    @Operation(summary = "View all Users without count", description = "Same listing as View all Users with hasNext instead of totals")
+    @GetMapping(params = "slice=true")
+    public ResponseEntity<GenericResponse<SliceDto<UserDto.ViewUserDto>>> viewUsersSlice(PageDto pageDto) {
+        var users = userService.viewAllUsersSlice(pageDto);
+        return ResponseEntity.status(HttpStatus.OK).body(new GenericResponse<>("All Stored users",  users));
+    }
 }
@@ -0,0 +1,21 @@
+package com.example.stockmanager.dtos;
+
+import lombok.*;
+
+import java.util.List;
+
+// one keyset page; pass nextCursor back as ?cursor= to get the following page, it is null on the last one
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageDto<T> {
+
+    private List<T> content;
+
+    private int size;
+
+    private String nextCursor;
+
+    private boolean hasNext;
+}
@@ -0,0 +1,30 @@
+package com.example.stockmanager.dtos;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.List;
+
+public class DashboardDto {
+
+    @Getter
+    @Setter
+    @AllArgsConstructor
+    @NoArgsConstructor
+    // everything the front page shows, gathered in one call
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class ViewDashboardDto {
+        private Integer totalStock;
+        private Integer stock75KG;
+        private Integer stock45KG;
+        private Integer bagStock;
+        private List<SalesDto.ViewSalesDto> recentSales;
+        // only filled in for admins, like /stock/distinct/containers
+        private List<String> containers;
+        private Instant generatedAt;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.stockmanager.dtos;
+
+import com.example.stockmanager.entities.ImportJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+public class ImportJobDto {
+
+    @Getter
+    @Setter
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class ViewImportJobDto {
+        private UUID id;
+        private String fileName;
+        private ImportJobStatus status;
+        private long rowsParsed;
+        private long rowsApplied;
+        private Integer processedItems;
+        private List<String> errors;
+        private Instant submittedAt;
+        private Instant finishedAt;
+    }
+}
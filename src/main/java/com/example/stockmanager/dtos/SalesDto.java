@@ -2,13 +2,16 @@ package com.example.stockmanager.dtos;
 
 import com.example.stockmanager.entities.ContainerWeights;
 import com.fasterxml.jackson.annotation.JsonFormat;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.UUID;
 
 public class SalesDto {
@@ -51,6 +54,28 @@ public class SalesDto {
         private double total;
         private ContainerWeights weight;
         private String containerName;
+        private Instant createdAt;
+    }
+
+    @Getter
+    @Setter
+    @AllArgsConstructor
+    @NoArgsConstructor
+    // DTO used to add a whole receipt at once
+    public static class AddSalesBatchDto {
+        @NotEmpty(message = "A receipt needs at least one line")
+        private List<@Valid AddSalesDto> lines;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    // why a receipt line could not be sold; index is the line's position in the receipt, from 0
+    public static class SaleLineErrorDto {
+        private int index;
+        private String name;
+        private Integer requested;
+        private Integer available;
+        private String message;
     }
 
     @Getter
@@ -0,0 +1,25 @@
+package com.example.stockmanager.dtos;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.util.List;
+
+// a page without the COUNT query: hasNext instead of totals, plus a planner estimate where one is cheap to get
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class SliceDto<T> {
+
+    private List<T> content;
+
+    private int page;
+
+    private int size;
+
+    private boolean hasNext;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long estimatedTotal;
+}
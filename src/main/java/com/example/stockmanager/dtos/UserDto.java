@@ -36,7 +36,6 @@ public class UserDto {
         private String firstName;
         private String lastName;
         private String email;
-        private String password;
         private String phoneNumber;
         private Role role;
     }
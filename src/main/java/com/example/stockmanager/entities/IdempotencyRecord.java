@@ -0,0 +1,42 @@
+package com.example.stockmanager.entities;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// the response to a write sent with an Idempotency-Key, replayed to retries of the same request until it expires
+@Entity
+@Table(name = "idempotency_keys", indexes = @Index(name = "idx_idempotency_keys_expires_at", columnList = "expiresAt"))
+@Getter
+@Setter
+@NoArgsConstructor
+public class IdempotencyRecord {
+    // hash of the user, method, path and key, so one client's key never answers another's request
+    @Id
+    @Column(length = 64)
+    private String id;
+    // hash of the request itself, to tell a retry from a different request reusing the key
+    @Column(length = 64)
+    private String requestHash;
+    // the request holding the key while it is being processed, so one that outlived its lease cannot touch a retry's
+    private UUID reservation;
+    // null while the first request is still being processed
+    private Integer status;
+    private String contentType;
+    @Column(length = 1_000_000)
+    private String body;
+    private Instant createdAt = Instant.now();
+    // the end of the lease while being processed, of the retention once the response is stored
+    private Instant expiresAt;
+
+    public IdempotencyRecord(String id, String requestHash, UUID reservation, Instant expiresAt) {
+        this.id = id;
+        this.requestHash = requestHash;
+        this.reservation = reservation;
+        this.expiresAt = expiresAt;
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.stockmanager.entities;
+
+public enum ImportJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,9 @@
+package com.example.stockmanager.entities;
+
+public enum MailStatus {
+    PENDING,
+    // claimed by a dispatcher until its lease runs out
+    SENDING,
+    SENT,
+    DEAD
+}
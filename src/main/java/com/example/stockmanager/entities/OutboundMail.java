@@ -0,0 +1,38 @@
+package com.example.stockmanager.entities;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// a mail waiting in the outbox, written in the same transaction as the change that triggered it
+@Entity
+@Table(name = "mail_outbox", indexes = @Index(name = "idx_mail_outbox_due", columnList = "status, nextAttemptAt"))
+@Getter
+@Setter
+@NoArgsConstructor
+public class OutboundMail {
+    @Id
+    private UUID id = UUID.randomUUID();
+    private String recipient;
+    private String subject;
+    @Column(length = 4000)
+    private String body;
+    @Enumerated(EnumType.STRING)
+    private MailStatus status = MailStatus.PENDING;
+    private int attempts;
+    private Instant createdAt = Instant.now();
+    private Instant nextAttemptAt = Instant.now();
+    private Instant sentAt;
+    @Column(length = 1000)
+    private String lastError;
+
+    public OutboundMail(String recipient, String subject, String body) {
+        this.recipient = recipient;
+        this.subject = subject;
+        this.body = body;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.stockmanager.entities;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+// a domain event waiting to be relayed to Kafka, written in the same transaction as the change it describes
+@Entity
+@Table(name = "event_outbox", indexes = @Index(name = "idx_event_outbox_pending", columnList = "publishedAt, id"))
+@Getter
+@Setter
+@NoArgsConstructor
+public class OutboxEvent {
+    // ids must follow commit order per key, so no pooled allocation that could hand another instance lower ids
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "event_outbox_seq")
+    @SequenceGenerator(name = "event_outbox_seq", sequenceName = "event_outbox_seq", allocationSize = 1)
+    private Long id;
+    private String topic;
+    @Column(name = "event_key")
+    private String key;
+    private String type;
+    @Column(length = 4000)
+    private String payload;
+    private Instant createdAt = Instant.now();
+    private Instant publishedAt;
+
+    public OutboxEvent(String topic, String key, String type, String payload) {
+        this.topic = topic;
+        this.key = key;
+        this.type = type;
+        this.payload = payload;
+    }
+}
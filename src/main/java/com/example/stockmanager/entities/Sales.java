@@ -6,11 +6,15 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.UUID;
 
 @Entity
-@Table(name="sales")
+@Table(name="sales", indexes = {
+        @Index(name = "idx_sales_date_id", columnList = "date DESC, id DESC"),
+        @Index(name = "idx_sales_created_at_id", columnList = "created_at DESC, id DESC")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -27,6 +31,9 @@ public class Sales {
     @Enumerated(EnumType.STRING)
     private ContainerWeights weight;
     private String containerName;
+    // when the sale was recorded, the order of the recent sales; older rows are backfilled from their date
+    @Column(name = "created_at", updatable = false)
+    private Instant createdAt = Instant.now();
 
     public Sales(LocalDate date, String code, String name, String containerName, Integer quantity, Double price, Double totalPrice, ContainerWeights weight) {
         this.date = date;
@@ -5,16 +5,26 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
+import java.util.Locale;
 import java.util.UUID;
 
 @Entity
-@Table(name="stock")
+@Table(name="stock", uniqueConstraints = @UniqueConstraint(name = "uk_stock_lookup_key", columnNames = "lookup_key"))
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Stock.CACHE_REGION)
+@NaturalIdCache(region = Stock.NATURAL_ID_CACHE_REGION)
 public class Stock {
+    public static final String CACHE_REGION = "stock";
+    public static final String NATURAL_ID_CACHE_REGION = "stock-natural-id";
+
     @Id
     private UUID id = UUID.randomUUID();
     private String code;
@@ -25,10 +35,27 @@ public class Stock {
     @Enumerated(EnumType.STRING)
     private ContainerWeights weight;
 
+    // normalized name + weight + container, kept in sync on every insert and update
+    @NaturalId(mutable = true)
+    @Column(name = "lookup_key")
+    private String lookupKey;
+
     public Stock(String code, String name, Integer quantity, String containerName) {
         this.code = code;
         this.name = name;
         this.quantity = quantity;
         this.container_name = containerName;
     }
+
+    public static String lookupKey(String name, ContainerWeights weight, String containerName) {
+        return name.trim().toLowerCase(Locale.ROOT) + "|" +
+                weight.name() + "|" +
+                containerName.trim().toLowerCase(Locale.ROOT);
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void refreshLookupKey() {
+        this.lookupKey = lookupKey(name, weight, container_name);
+    }
 }
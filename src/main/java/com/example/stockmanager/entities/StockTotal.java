@@ -0,0 +1,21 @@
+package com.example.stockmanager.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// running stock quantity per weight, maintained alongside every stock mutation
+@Entity
+@Table(name = "stock_totals")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockTotal {
+    @Id
+    @Enumerated(EnumType.STRING)
+    private ContainerWeights weight;
+    private long quantity;
+}
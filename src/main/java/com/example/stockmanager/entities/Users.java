@@ -8,6 +8,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -33,6 +34,10 @@ public class Users implements UserDetails {
     private String phoneNumber;
     @Enumerated(EnumType.STRING)
     private Role role;
+    // bumped whenever tokens issued so far must stop working, e.g. on a password change
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long tokenVersion;
 
     public Users(@NotBlank(message = "firstName can not be blank") String firstName,
                  @NotBlank(message = "lastName can not be blank") String lastName,
@@ -0,0 +1,15 @@
+package com.example.stockmanager.events;
+
+import com.example.stockmanager.entities.ContainerWeights;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+// a sale as it stands after the change, keyed by the stock line it was sold from
+public record SaleEvent(String type, UUID saleId, String stockKey, LocalDate date, String code, String name,
+                        String containerName, ContainerWeights weight, Integer quantity, Double price, Double totalPrice) {
+
+    public static final String RECORDED = "SALE_RECORDED";
+    public static final String UPDATED = "SALE_UPDATED";
+    public static final String DELETED = "SALE_DELETED";
+}
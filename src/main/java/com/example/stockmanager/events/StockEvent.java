@@ -0,0 +1,17 @@
+package com.example.stockmanager.events;
+
+import com.example.stockmanager.entities.ContainerWeights;
+
+import java.util.UUID;
+
+/**
+ * A change to one stock line. {@code quantityDelta} is what the change added (negative when it removed);
+ * {@code quantity} is the resulting level, null when the change was applied in bulk without reading it back.
+ */
+public record StockEvent(String type, UUID stockId, String stockKey, String code, String name, String containerName,
+                         ContainerWeights weight, Integer quantityDelta, Integer quantity) {
+
+    public static final String ADDED = "STOCK_ADDED";
+    public static final String UPDATED = "STOCK_UPDATED";
+    public static final String DELETED = "STOCK_DELETED";
+}
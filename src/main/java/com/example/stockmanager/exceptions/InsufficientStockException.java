@@ -1,7 +1,24 @@
 package com.example.stockmanager.exceptions;
 
+import com.example.stockmanager.dtos.SalesDto;
+
+import java.util.List;
+
 public class InsufficientStockException extends RuntimeException {
+
+    // one entry per line that could not be sold, for requests with several lines
+    private final List<SalesDto.SaleLineErrorDto> lines;
+
     public InsufficientStockException(String message) {
+        this(message, null);
+    }
+
+    public InsufficientStockException(String message, List<SalesDto.SaleLineErrorDto> lines) {
         super(message);
+        this.lines = lines;
+    }
+
+    public List<SalesDto.SaleLineErrorDto> getLines() {
+        return lines;
     }
 }
@@ -3,10 +3,12 @@ package com.example.stockmanager.handlers;
 import com.example.stockmanager.exceptions.AdminUserExistsException;
 import com.example.stockmanager.exceptions.ForbiddenActionException;
 import com.example.stockmanager.exceptions.InsufficientStockException;
+import com.example.stockmanager.exceptions.ServiceBusyException;
 import com.example.stockmanager.responses.GenericResponse;
 import io.jsonwebtoken.ExpiredJwtException;
 import lombok.NonNull;
 import org.apache.kafka.common.errors.ResourceNotFoundException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -39,6 +41,13 @@ public class GlobalErrorHandler extends ResponseEntityExceptionHandler {
         return new ResponseEntity<>(response, HttpStatus.CONFLICT);
     }
 
+    // raised by the unique stock lookup key when two requests create the same item at once
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<GenericResponse<?>> handleDataIntegrityViolationException(DataIntegrityViolationException exception) {
+        var response = new GenericResponse<>("The request conflicts with an existing record, please try again.", null);
+        return new ResponseEntity<>(response, HttpStatus.CONFLICT);
+    }
+
     @ExceptionHandler(ResourceNotFoundException.class)
     public ResponseEntity<GenericResponse<?>> handleResourceNotFoundException(ResourceNotFoundException exception) {
         var response = new GenericResponse<>(exception.getMessage(), null);
@@ -71,7 +80,7 @@ public class GlobalErrorHandler extends ResponseEntityExceptionHandler {
 
     @ExceptionHandler(value = {InsufficientStockException.class})
     public ResponseEntity<GenericResponse<?>> handleInsufficientStockException(InsufficientStockException exception) {
-        GenericResponse<?> response = new GenericResponse<>(exception.getMessage(), null);
+        GenericResponse<?> response = new GenericResponse<>(exception.getMessage(), exception.getLines());
         return new ResponseEntity<>(response, HttpStatus.CONFLICT);
     }
 
@@ -81,6 +90,12 @@ public class GlobalErrorHandler extends ResponseEntityExceptionHandler {
         return new ResponseEntity<>(response, HttpStatus.CONFLICT);
     }
 
+    @ExceptionHandler(value = {ServiceBusyException.class})
+    public ResponseEntity<GenericResponse<?>> handleServiceBusyException(ServiceBusyException exception) {
+        GenericResponse<?> response = new GenericResponse<>(exception.getMessage(), null);
+        return new ResponseEntity<>(response, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     // handles validations example if email is the right format or if nothing is blank or null
     @Override
     protected ResponseEntity<Object> handleMethodArgumentNotValid(MethodArgumentNotValidException exception, @NonNull HttpHeaders headers, @NonNull HttpStatusCode status, @NonNull WebRequest request) {
@@ -10,7 +10,7 @@ public class SalesMapper {
     }
 
     public static SalesDto.ViewSalesDto map (Sales sales) {
-        return new SalesDto.ViewSalesDto(sales.getId(), sales.getDate(), sales.getCode(), sales.getName(), sales.getQuantity(), sales.getPrice(), sales.getTotalPrice(), sales.getWeight(), sales.getContainerName());
+        return new SalesDto.ViewSalesDto(sales.getId(), sales.getDate(), sales.getCode(), sales.getName(), sales.getQuantity(), sales.getPrice(), sales.getTotalPrice(), sales.getWeight(), sales.getContainerName(), sales.getCreatedAt());
     }
 
 }
@@ -10,6 +10,6 @@ public class UserMapper {
     }
 
     public static UserDto.ViewUserDto map(Users user) {
-        return new UserDto.ViewUserDto(user.getId(), user.getFirstname(), user.getLastname(), user.getEmail(), user.getPassword(), user.getPhoneNumber(), user.getRole());
+        return new UserDto.ViewUserDto(user.getId(), user.getFirstname(), user.getLastname(), user.getEmail(), user.getPhoneNumber(), user.getRole());
     }
 }
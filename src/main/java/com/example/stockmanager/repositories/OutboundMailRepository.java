@@ -0,0 +1,28 @@
+package com.example.stockmanager.repositories;
+
+import com.example.stockmanager.entities.MailStatus;
+import com.example.stockmanager.entities.OutboundMail;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface OutboundMailRepository extends JpaRepository<OutboundMail, UUID> {
+
+    // rows another dispatcher has locked are skipped (lock timeout -2 is SKIP LOCKED where the database supports it)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT m FROM OutboundMail m WHERE m.status IN :statuses AND m.nextAttemptAt <= :now ORDER BY m.nextAttemptAt")
+    List<OutboundMail> lockDue(@Param("statuses") Collection<MailStatus> statuses, @Param("now") Instant now, Limit limit);
+}
@@ -1,9 +1,13 @@
 package com.example.stockmanager.repositories;
 
+import com.example.stockmanager.dtos.SalesDto;
 import com.example.stockmanager.entities.Sales;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -13,22 +17,77 @@ import java.util.Optional;
 import java.util.UUID;
 
 @Repository
-public interface SalesRepository extends JpaRepository<Sales, UUID> {
-    @Query("SELECT s FROM Sales s ORDER BY s.date DESC LIMIT 10")
-    List<Sales> getRecentSales();
+public interface SalesRepository extends JpaRepository<Sales, UUID>, SalesRepositoryCustom {
+    // read paths select straight into the view DTO, so no entities are hydrated or snapshotted for dirty checking
+    String VIEW_SALES = "new com.example.stockmanager.dtos.SalesDto$ViewSalesDto(s.id, s.date, s.code, s.name, s.quantity, s.price, s.totalPrice, s.weight, s.containerName, s.createdAt)";
 
-    @Query("SELECT s FROM Sales s ORDER BY s.date DESC")
-    Page<Sales> getSales(Pageable pageable);
+    // in the order they were recorded, served by idx_sales_created_at_id; loads RecentSales
+    @Query("SELECT " + VIEW_SALES + " FROM Sales s ORDER BY s.createdAt DESC, s.id DESC")
+    List<SalesDto.ViewSalesDto> getRecentSales(Limit limit);
 
-    @Query("""
-            SELECT s FROM Sales s
+    // sales recorded before created_at existed are placed at the start of their date
+    @Modifying
+    @Query(value = "UPDATE sales SET created_at = CAST(date AS TIMESTAMP WITH TIME ZONE) WHERE created_at IS NULL", nativeQuery = true)
+    int backfillCreatedAt();
+
+    @Query("SELECT " + VIEW_SALES + " FROM Sales s ORDER BY s.date DESC, s.id DESC")
+    Page<SalesDto.ViewSalesDto> getSales(Pageable pageable);
+
+    @Query("SELECT " + VIEW_SALES + """
+             FROM Sales s
+            WHERE (:startDate IS NULL OR s.date >= :startDate)
+              AND (:endDate IS NULL OR s.date <= :endDate)
+            ORDER BY s.date DESC, s.id DESC
+            """)
+    Page<SalesDto.ViewSalesDto> findByDateRange(Pageable pageable,
+            @Param("startDate") java.time.LocalDate startDate,
+            @Param("endDate") java.time.LocalDate endDate);
+
+    // Slice variants: one extra row instead of a COUNT over the sales table
+    @Query("SELECT " + VIEW_SALES + " FROM Sales s ORDER BY s.date DESC, s.id DESC")
+    Slice<SalesDto.ViewSalesDto> sliceSales(Pageable pageable);
+
+    @Query("SELECT " + VIEW_SALES + """
+             FROM Sales s
+            WHERE (:startDate IS NULL OR s.date >= :startDate)
+              AND (:endDate IS NULL OR s.date <= :endDate)
+            ORDER BY s.date DESC, s.id DESC
+            """)
+    Slice<SalesDto.ViewSalesDto> sliceByDateRange(Pageable pageable,
+            @Param("startDate") java.time.LocalDate startDate,
+            @Param("endDate") java.time.LocalDate endDate);
+
+    // keyset pages on (date DESC, id DESC), served by idx_sales_date_id; the cost does not grow with the page number
+    @Query("SELECT " + VIEW_SALES + " FROM Sales s ORDER BY s.date DESC, s.id DESC")
+    List<SalesDto.ViewSalesDto> getSalesFirst(Limit limit);
+
+    @Query("SELECT " + VIEW_SALES + " FROM Sales s WHERE (s.date, s.id) < (:afterDate, :afterId) ORDER BY s.date DESC, s.id DESC")
+    List<SalesDto.ViewSalesDto> getSalesAfter(@Param("afterDate") java.time.LocalDate afterDate,
+                              @Param("afterId") UUID afterId,
+                              Limit limit);
+
+    @Query("SELECT " + VIEW_SALES + """
+             FROM Sales s
+            WHERE (:startDate IS NULL OR s.date >= :startDate)
+              AND (:endDate IS NULL OR s.date <= :endDate)
+            ORDER BY s.date DESC, s.id DESC
+            """)
+    List<SalesDto.ViewSalesDto> findFirstByDateRange(@Param("startDate") java.time.LocalDate startDate,
+            @Param("endDate") java.time.LocalDate endDate,
+            Limit limit);
+
+    @Query("SELECT " + VIEW_SALES + """
+             FROM Sales s
             WHERE (:startDate IS NULL OR s.date >= :startDate)
               AND (:endDate IS NULL OR s.date <= :endDate)
-            ORDER BY s.date DESC
+              AND (s.date, s.id) < (:afterDate, :afterId)
+            ORDER BY s.date DESC, s.id DESC
             """)
-    Page<Sales> findByDateRange(Pageable pageable,
-                                @Param("startDate") java.time.LocalDate startDate,
-                                @Param("endDate") java.time.LocalDate endDate);
+    List<SalesDto.ViewSalesDto> findByDateRangeAfter(@Param("startDate") java.time.LocalDate startDate,
+            @Param("endDate") java.time.LocalDate endDate,
+            @Param("afterDate") java.time.LocalDate afterDate,
+            @Param("afterId") UUID afterId,
+            Limit limit);
 
     @Query("SELECT s FROM Sales s WHERE s.id = :id")
     Optional<Sales> findSaleById(@Param("id") UUID id);
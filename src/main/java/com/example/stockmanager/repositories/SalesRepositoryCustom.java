@@ -0,0 +1,12 @@
+package com.example.stockmanager.repositories;
+
+import com.example.stockmanager.entities.Sales;
+
+import java.util.Collection;
+
+// set-based writes, implemented in SalesRepositoryImpl
+public interface SalesRepositoryCustom {
+
+    // persists new rows as JDBC batches; they stay managed
+    void insertAll(Collection<Sales> sales);
+}
@@ -0,0 +1,24 @@
+package com.example.stockmanager.repositories;
+
+import com.example.stockmanager.entities.Sales;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+
+// transactional like Spring Data's own methods, the session is only usable inside one
+@Transactional
+public class SalesRepositoryImpl implements SalesRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public void insertAll(Collection<Sales> sales) {
+        if (sales.isEmpty()) return;
+        // persist rather than saveAll: ids are pre-assigned, so save() would merge and SELECT every row first
+        sales.forEach(entityManager::persist);
+        entityManager.flush();
+    }
+}
@@ -1,54 +1,83 @@
 package com.example.stockmanager.repositories;
 
+import com.example.stockmanager.dtos.StockDto;
 import com.example.stockmanager.entities.Stock;
 import com.example.stockmanager.entities.ContainerWeights;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
-public interface StockRepository extends JpaRepository<Stock, UUID> {
-    @Query("SELECT SUM(s.quantity) FROM Stock s")
-    Integer getTotalStock();
-
-    @Query("SELECT SUM(s.quantity) FROM Stock s WHERE s.weight = 'KG_75' ")
-    Integer get75KGTotalStock();
-    @Query("SELECT SUM(s.quantity) FROM Stock s WHERE s.weight = 'KG_45' ")
-    Integer get45KGTotalStock();
-
-    @Query("SELECT SUM(s.quantity) FROM Stock s WHERE s.weight = 'BAGS' ")
-    Integer getBagTotalStock();
-
-    @Query("SELECT s FROM Stock s WHERE LOWER(s.name) = LOWER(:productName) AND s.weight = :weight AND LOWER(s.container_name) = LOWER(:containerName)")
-    Optional<Stock> findByProductNameAndWeightAndContainerName(
-            @Param("productName") String productName,
-            @Param("weight") ContainerWeights weight,
-            @Param("containerName") String containerName
-    );
-    @Query("SELECT s FROM Stock s WHERE s.weight = :weight and lower(s.container_name) = lower(:containerName)")
-    Page<Stock> findByWeightAndContainerName(Pageable pageable, @Param("weight") ContainerWeights weight, @Param("containerName") String containerName);
-    @Query("SELECT s FROM Stock s WHERE s.weight = :weight")
-    Page<Stock> findByWeight(Pageable pageable, @Param("weight") ContainerWeights weight);
-    @Query("SELECT s FROM Stock s WHERE lower(s.container_name) = lower(:containerName)")
-    Page<Stock> findByContainerName(Pageable pageable, @Param("containerName") String containerName);
-    @Query("SELECT s FROM Stock s")
-    Page<Stock> getAllStock(Pageable pageable);
+public interface StockRepository extends JpaRepository<Stock, UUID>, StockRepositoryCustom {
+    // full scan, only used to seed and reconcile the stock_totals counters
+    @Query("SELECT s.weight, SUM(s.quantity) FROM Stock s GROUP BY s.weight")
+    List<Object[]> sumQuantityByWeight();
+
+    @Query("SELECT s.lookupKey FROM Stock s WHERE s.lookupKey IN :lookupKeys")
+    List<String> findExistingLookupKeys(@Param("lookupKeys") Collection<String> lookupKeys);
+
+    @Query("SELECT s FROM Stock s WHERE s.lookupKey IS NULL")
+    List<Stock> findWithoutLookupKey();
+
+    // listings select straight into the view DTO, so no entities are hydrated or snapshotted for dirty checking;
+    // they and the lookups below go through the query cache, which any write to the stock table invalidates
+    String VIEW_STOCK = "new com.example.stockmanager.dtos.StockDto$ViewStockDto(s.id, s.code, s.name, s.quantity, s.container_name, s.weight)";
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("SELECT " + VIEW_STOCK + " FROM Stock s WHERE s.weight = :weight and lower(s.container_name) = lower(:containerName)")
+    Page<StockDto.ViewStockDto> findByWeightAndContainerName(Pageable pageable, @Param("weight") ContainerWeights weight, @Param("containerName") String containerName);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("SELECT " + VIEW_STOCK + " FROM Stock s WHERE s.weight = :weight")
+    Page<StockDto.ViewStockDto> findByWeight(Pageable pageable, @Param("weight") ContainerWeights weight);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("SELECT " + VIEW_STOCK + " FROM Stock s WHERE lower(s.container_name) = lower(:containerName)")
+    Page<StockDto.ViewStockDto> findByContainerName(Pageable pageable, @Param("containerName") String containerName);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("SELECT " + VIEW_STOCK + " FROM Stock s")
+    Page<StockDto.ViewStockDto> getAllStock(Pageable pageable);
+
+    // Slice variants of the listings above: Spring Data fetches one extra row instead of running a COUNT
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("SELECT " + VIEW_STOCK + " FROM Stock s WHERE s.weight = :weight and lower(s.container_name) = lower(:containerName)")
+    Slice<StockDto.ViewStockDto> sliceByWeightAndContainerName(Pageable pageable, @Param("weight") ContainerWeights weight, @Param("containerName") String containerName);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("SELECT " + VIEW_STOCK + " FROM Stock s WHERE s.weight = :weight")
+    Slice<StockDto.ViewStockDto> sliceByWeight(Pageable pageable, @Param("weight") ContainerWeights weight);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("SELECT " + VIEW_STOCK + " FROM Stock s WHERE lower(s.container_name) = lower(:containerName)")
+    Slice<StockDto.ViewStockDto> sliceByContainerName(Pageable pageable, @Param("containerName") String containerName);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("SELECT " + VIEW_STOCK + " FROM Stock s")
+    Slice<StockDto.ViewStockDto> sliceAllStock(Pageable pageable);
+
+    // the whole catalogue, read to build the article index
+    @Query("SELECT " + VIEW_STOCK + " FROM Stock s")
+    List<StockDto.ViewStockDto> findAllViews();
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true")})
     @Query("SELECT DISTINCT UPPER(TRIM(s.container_name)) FROM Stock s")
     List<String> getDistinctContainerName();
 
-    @Query("SELECT s FROM Stock s WHERE s.id = :id")
-    Optional<Stock> findItemById(@Param("id") UUID id);
-
-    @Query("SELECT s.name FROM Stock s WHERE LOWER(s.code) = LOWER(:articleCode)")
-    List<String> getArticleName (@Param("articleCode") String articleCode);
+    // by id, so the entity cache answers it
+    default Optional<Stock> findItemById(UUID id) {
+        return findById(id);
+    }
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     @Query("SELECT s FROM Stock s WHERE LOWER(s.code) = LOWER(:articleCode)")
     Optional<Stock> findByCode(@Param("articleCode") String articleCode);
 }
@@ -0,0 +1,26 @@
+package com.example.stockmanager.repositories;
+
+import com.example.stockmanager.entities.Stock;
+
+import java.util.Collection;
+import java.util.Optional;
+
+// set-based writes and cache-aware lookups, implemented in StockRepositoryImpl
+public interface StockRepositoryCustom {
+
+    // persists new rows as JDBC batches and detaches them afterwards
+    void insertAll(Collection<Stock> stocks);
+
+    // adds each row's quantity to the stored row with the same lookup key, in one JDBC batch
+    void addQuantities(Collection<Stock> increments);
+
+    // resolved through the natural id and entity caches, so a hot item costs no query at all
+    Optional<Stock> findByLookupKey(String lookupKey);
+
+    // decrements only when enough quantity is left, returns the number of rows updated (0 or 1)
+    int decrementQuantity(String lookupKey, Integer quantity);
+
+    int incrementQuantity(String lookupKey, Integer quantity);
+
+    int deleteIfDepleted(String lookupKey);
+}
@@ -0,0 +1,121 @@
+package com.example.stockmanager.repositories;
+
+import com.example.stockmanager.configurations.StockCache;
+import com.example.stockmanager.entities.Stock;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+
+// transactional like Spring Data's own methods, the session is only usable inside one
+@Transactional
+@RequiredArgsConstructor
+public class StockRepositoryImpl implements StockRepositoryCustom {
+
+    private static final String ADD_QUANTITY_SQL = """
+            UPDATE stock
+               SET quantity = quantity + ?,
+                   code = CASE WHEN code IS NULL OR code = '' THEN ? ELSE code END
+             WHERE lookup_key = ?
+            """;
+    // the row id is always the last parameter
+    private static final String DECREMENT_SQL = "UPDATE stock SET quantity = quantity - ? WHERE quantity >= ? AND id = ?";
+    private static final String INCREMENT_SQL = "UPDATE stock SET quantity = quantity + ? WHERE id = ?";
+    private static final String DELETE_DEPLETED_SQL = "DELETE FROM stock WHERE quantity = 0 AND id = ?";
+
+    private final StockCache stockCache;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public void insertAll(Collection<Stock> stocks) {
+        if (stocks.isEmpty()) return;
+        // persist rather than save: ids are pre-assigned, so save() would merge and SELECT every row first
+        stocks.forEach(entityManager::persist);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Override
+    public void addQuantities(Collection<Stock> increments) {
+        if (increments.isEmpty()) return;
+        entityManager.flush();
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(ADD_QUANTITY_SQL)) {
+                for (Stock increment : increments) {
+                    statement.setInt(1, increment.getQuantity());
+                    statement.setString(2, increment.getCode());
+                    statement.setString(3, Stock.lookupKey(increment.getName(), increment.getWeight(), increment.getContainer_name()));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+        // managed and cached copies of the updated rows are stale now
+        entityManager.clear();
+        stockCache.changedAll();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Stock> findByLookupKey(String lookupKey) {
+        return entityManager.unwrap(Session.class).bySimpleNaturalId(Stock.class).loadOptional(lookupKey);
+    }
+
+    @Override
+    public int decrementQuantity(String lookupKey, Integer quantity) {
+        UUID id = updateRow(lookupKey, DECREMENT_SQL, quantity, quantity);
+        if (id == null) return 0;
+        stockCache.changed(id);
+        return 1;
+    }
+
+    @Override
+    public int incrementQuantity(String lookupKey, Integer quantity) {
+        UUID id = updateRow(lookupKey, INCREMENT_SQL, quantity);
+        if (id == null) return 0;
+        stockCache.changed(id);
+        return 1;
+    }
+
+    @Override
+    public int deleteIfDepleted(String lookupKey) {
+        UUID id = updateRow(lookupKey, DELETE_DEPLETED_SQL);
+        if (id == null) return 0;
+        stockCache.removed(id);
+        return 1;
+    }
+
+    /*
+     * Plain JDBC against the row id rather than a bulk HQL statement: Hibernate answers any bulk statement on Stock
+     * by emptying the whole Stock cache region, which on every sale would throw away every hot item with it.
+     * The id comes from the natural id cache, and the caller evicts just that row. Returns the id of the row the
+     * statement changed, or null when it changed none.
+     */
+    private UUID updateRow(String lookupKey, String sql, Object... parameters) {
+        Session session = entityManager.unwrap(Session.class);
+        session.flush();
+        Stock stock = session.bySimpleNaturalId(Stock.class).getReference(lookupKey);
+        if (stock == null) return null;
+        UUID id = (UUID) session.getIdentifier(stock);
+        int updated = session.doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (int i = 0; i < parameters.length; i++) {
+                    statement.setObject(i + 1, parameters[i]);
+                }
+                statement.setObject(parameters.length + 1, id);
+                return statement.executeUpdate();
+            }
+        });
+        // the managed copy, if any, is stale now
+        session.detach(stock);
+        return updated == 0 ? null : id;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.stockmanager.repositories;
+
+import com.example.stockmanager.entities.ContainerWeights;
+import com.example.stockmanager.entities.StockTotal;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface StockTotalRepository extends JpaRepository<StockTotal, ContainerWeights> {
+
+    @Modifying
+    @Query("UPDATE StockTotal t SET t.quantity = t.quantity + :delta WHERE t.weight = :weight")
+    int adjust(@Param("weight") ContainerWeights weight, @Param("delta") long delta);
+}
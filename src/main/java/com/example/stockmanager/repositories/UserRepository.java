@@ -1,14 +1,17 @@
 package com.example.stockmanager.repositories;
 
+import com.example.stockmanager.dtos.UserDto;
 import com.example.stockmanager.entities.Role;
 import com.example.stockmanager.entities.Users;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -24,8 +27,20 @@ public interface UserRepository extends JpaRepository<Users, UUID> {
     @Query("SELECT u FROM Users u WHERE u.id = :id")
     Optional<Users> findUserById(@Param("id") UUID id);
 
-    @Query("SELECT u FROM Users u")
-    Page<Users> findAllUsers(Pageable pageable);
+    // listings select straight into the view DTO and never touch the password hash
+    String VIEW_USER = "new com.example.stockmanager.dtos.UserDto$ViewUserDto(u.id, u.firstname, u.lastname, u.email, u.phoneNumber, u.role)";
+
+    @Query("SELECT " + VIEW_USER + " FROM Users u")
+    Page<UserDto.ViewUserDto> findAllUsers(Pageable pageable);
+
+    @Query("SELECT " + VIEW_USER + " FROM Users u")
+    Slice<UserDto.ViewUserDto> sliceAllUsers(Pageable pageable);
+
+    @Query("SELECT u.id, u.tokenVersion FROM Users u")
+    List<Object[]> findAllTokenVersions();
+
+    @Query("SELECT u.tokenVersion FROM Users u WHERE u.id = :id")
+    Optional<Long> findTokenVersion(@Param("id") UUID id);
 
     @Query("SELECT COUNT(u) FROM Users u WHERE u.role = :role")
     long countByRole(@Param("role") Role role);
@@ -1,9 +1,12 @@
 package com.example.stockmanager.responses;
 
 import com.example.stockmanager.entities.Users;
+import com.example.stockmanager.services.Impl.TokenPrincipal;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import java.util.UUID;
+
 public class AuthenticatedUser {
 
     public static Users getAuthenticatedUser() {
@@ -14,6 +17,17 @@ public class AuthenticatedUser {
         return null;
     }
 
+    public static UUID getAuthenticatedUserId() {
+        Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        if (principal instanceof Users user) {
+            return user.getId();
+        }
+        if (principal instanceof TokenPrincipal tokenPrincipal) {
+            return tokenPrincipal.id();
+        }
+        return null;
+    }
+
     public static String getAuthenticatedUserEmail() {
         Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
         if (principal instanceof UserDetails) {
@@ -0,0 +1,8 @@
+package com.example.stockmanager.services;
+
+import com.example.stockmanager.dtos.DashboardDto;
+
+public interface DashboardServices {
+
+    DashboardDto.ViewDashboardDto getDashboard(boolean includeContainers);
+}
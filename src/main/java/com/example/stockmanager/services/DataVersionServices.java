@@ -0,0 +1,16 @@
+package com.example.stockmanager.services;
+
+import org.springframework.web.context.request.WebRequest;
+
+public interface DataVersionServices {
+
+    enum Table { STOCK, SALES }
+
+    /**
+     * Sets a strong ETag for the current version of the given data and the request's parameters.
+     *
+     * @return true when the client's If-None-Match already matches; the response is then a 304 and the
+     * caller should return without loading anything
+     */
+    boolean notModified(WebRequest request, Table table);
+}
@@ -0,0 +1,453 @@
+package com.example.stockmanager.services.Impl;
+
+import com.example.stockmanager.dtos.StockDto;
+import com.example.stockmanager.entities.ContainerWeights;
+import com.example.stockmanager.entities.Stock;
+import com.example.stockmanager.repositories.StockRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * In-memory index of every stock line by normalized article code and name, so a scan at the till is answered
+ * without a query, and an unknown code just as fast as a known one. The same lines back the ranked, typo-tolerant
+ * stock search through {@link ArticleSearchIndex}.
+ * <p>
+ * Loaded at startup and rebuilt every {@code articles.index.refresh-interval}. A rebuild fills a new index and
+ * swaps it in, lookups keep using the old one meanwhile. In between, a committed transaction puts the stock
+ * lines it changed into the index as it left them: entity writes are picked up from Hibernate's flush events,
+ * statements that bypass the persistence context report what they did to a line through
+ * {@link #changed(String, int)} and {@link #removed(String)}. Lines changed on other nodes, announced through
+ * {@link #changed(LiveEvent)}, lines changed while a rebuild ran and bulk changes such as imports are read again
+ * on a background thread, so a lookup never queries the database. A lookup also sees the stock lines its own transaction changed and has not
+ * committed yet.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ArticleIndex {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final StockRepository stockRepository;
+    private final ObjectMapper objectMapper;
+    private final PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // taken by whatever changes the index; readers take no lock
+    private final Object writeLock = new Object();
+    private final Object rebuildLock = new Object();
+    // lines changed on other nodes, read again by the background refresh
+    private final Set<String> staleKeys = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+    private volatile boolean rebuildRequested;
+    private volatile Index index = new Index();
+    // while a rebuild runs, the lines changed in the old index, read again once the rebuilt one is swapped in
+    private Set<String> changedDuringRebuild;
+    private int lookupKeyIndex;
+    private TransactionTemplate readOnlyTransaction;
+    private ExecutorService refresher;
+
+    @PostConstruct
+    void registerListeners() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        refresher = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("article-index-refresh").factory());
+
+        var sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        lookupKeyIndex = Arrays.asList(sessionFactory.getMappingMetamodel()
+                .getEntityDescriptor(Stock.class).getPropertyNames()).indexOf("lookupKey");
+
+        var listener = new StockChangeListener();
+        var registry = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, listener);
+        registry.appendListeners(EventType.POST_UPDATE, listener);
+        registry.appendListeners(EventType.PRE_DELETE, listener);
+    }
+
+    @PreDestroy
+    void stop() {
+        refresher.shutdownNow();
+    }
+
+    public List<StockDto.ViewStockDto> findByCode(String code) {
+        return find(code, current -> current.byCode, Article::code);
+    }
+
+    public List<StockDto.ViewStockDto> findByName(String name) {
+        return find(name, current -> current.byName, Article::name);
+    }
+
+    /**
+     * Lines whose code, name or container match every word of the query by prefix or, from three letters on,
+     * with a typo, best matches first. Unlike the exact lookups this does not overlay uncommitted changes of the
+     * calling transaction.
+     */
+    public List<StockDto.ViewStockDto> search(String query, int limit) {
+        if (query == null || query.isBlank()) return List.of();
+        return index.search.search(query, limit).stream().map(Article::toDto).toList();
+    }
+
+    // for statements that add to or take from a line's quantity without going through the persistence context
+    public void changed(String lookupKey, int quantityDelta) {
+        written(lookupKey, Change.delta(quantityDelta));
+    }
+
+    // for statements that delete a line without going through the persistence context
+    public void removed(String lookupKey) {
+        written(lookupKey, Change.of(null));
+    }
+
+    // for bulk changes such as a stock import: the whole index is rebuilt once they are committed
+    public void changedAll() {
+        PendingChanges pending = pendingForWrite();
+        if (pending == null) {
+            requestRebuild();
+            return;
+        }
+        pending.all = true;
+    }
+
+    // a change committed on another node, as announced on the live stream
+    void changed(LiveEvent event) {
+        if (event.type().equals("STOCK_IMPORTED")) {
+            requestRebuild();
+            return;
+        }
+        try {
+            JsonNode key = objectMapper.readTree(event.data()).get("key");
+            if (key == null) return;
+            staleKeys.add(key.asText());
+            requestRefresh();
+        } catch (IOException e) {
+            requestRebuild();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${articles.index.refresh-interval:PT10M}", initialDelayString = "${articles.index.refresh-interval:PT10M}")
+    public void reload() {
+        synchronized (rebuildLock) {
+            synchronized (writeLock) {
+                changedDuringRebuild = new HashSet<>();
+            }
+            Index rebuilt = new Index();
+            for (StockDto.ViewStockDto row : stockRepository.findAllViews()) {
+                rebuilt.put(Article.of(row));
+            }
+            synchronized (writeLock) {
+                // committed after the rows were read, or read before their change was committed
+                staleKeys.addAll(changedDuringRebuild);
+                changedDuringRebuild = null;
+                index = rebuilt;
+            }
+            if (!staleKeys.isEmpty()) requestRefresh();
+            log.debug("Article index loaded with {} stock lines", rebuilt.byId.size());
+        }
+    }
+
+    private void requestRebuild() {
+        rebuildRequested = true;
+        requestRefresh();
+    }
+
+    private void requestRefresh() {
+        if (refreshQueued.compareAndSet(false, true)) refresher.execute(this::refresh);
+    }
+
+    // runs on the refresher thread; changes requested while it runs queue another run
+    private void refresh() {
+        refreshQueued.set(false);
+        try {
+            if (rebuildRequested) {
+                rebuildRequested = false;
+                reload();
+            }
+            for (Iterator<String> it = staleKeys.iterator(); it.hasNext(); ) {
+                String key = it.next();
+                it.remove();
+                Article read = readOnlyTransaction.execute(status -> stockRepository.findByLookupKey(key).map(Article::of).orElse(null));
+                apply(key, Change.of(read));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not refresh the article index, it is rebuilt on the next reload", e);
+        }
+    }
+
+    private void written(String key, Change change) {
+        PendingChanges pending = pendingForWrite();
+        if (pending == null) {
+            apply(key, change);
+            return;
+        }
+        pending.changes.merge(key, change, Change::then);
+    }
+
+    private void apply(String key, Change change) {
+        boolean applied;
+        synchronized (writeLock) {
+            applied = index.apply(key, change);
+            if (changedDuringRebuild != null) changedDuringRebuild.add(key);
+        }
+        if (!applied) {
+            staleKeys.add(key);
+            requestRefresh();
+        }
+    }
+
+    private List<StockDto.ViewStockDto> find(String value, Function<Index, Map<String, List<Article>>> map,
+                                             Function<Article, String> field) {
+        if (value == null || value.isBlank()) return List.of();
+        String normalized = normalize(value);
+        PendingChanges own = ownChanges();
+        Index current = index;
+        List<Article> hits = map.apply(current).getOrDefault(normalized, List.of());
+
+        if (own == null || own.changes.isEmpty()) {
+            return hits.stream().map(Article::toDto).toList();
+        }
+        // read your own writes: the lines this transaction changed are taken as it leaves them
+        List<Article> changed = new ArrayList<>();
+        own.changes.forEach((key, change) -> {
+            Article article = change.on(current.byKey.get(key));
+            if (article != null) changed.add(article);
+        });
+        Set<UUID> changedIds = new HashSet<>();
+        changed.forEach(article -> changedIds.add(article.id()));
+        List<Article> merged = new ArrayList<>();
+        for (Article hit : hits) {
+            if (!own.changes.containsKey(hit.key()) && !changedIds.contains(hit.id())) merged.add(hit);
+        }
+        for (Article article : changed) {
+            if (normalized.equals(normalize(field.apply(article)))) merged.add(article);
+        }
+        return merged.stream().map(Article::toDto).toList();
+    }
+
+    private static String normalize(String value) {
+        return value == null ? null : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private PendingChanges ownChanges() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return null;
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            // push entity changes made earlier in this transaction through the listener
+            entityManager.flush();
+        }
+        return findPending();
+    }
+
+    private PendingChanges pendingForWrite() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return null;
+        PendingChanges pending = findPending();
+        if (pending == null) {
+            pending = new PendingChanges();
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        return pending;
+    }
+
+    private PendingChanges findPending() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingChanges pending && pending.owner() == this) {
+                return pending;
+            }
+        }
+        return null;
+    }
+
+    record Article(UUID id, String key, String code, String name, Integer quantity, String containerName,
+                           ContainerWeights weight) {
+
+        static Article of(Stock stock) {
+            return new Article(stock.getId(), stock.getLookupKey(), stock.getCode(), stock.getName(),
+                    stock.getQuantity(), stock.getContainer_name(), stock.getWeight());
+        }
+
+        static Article of(StockDto.ViewStockDto row) {
+            return new Article(row.getId(), Stock.lookupKey(row.getItem_name(), row.getWeight(), row.getContainer_name()),
+                    row.getItem_code(), row.getItem_name(), row.getQuantity(), row.getContainer_name(), row.getWeight());
+        }
+
+        Article withQuantity(Integer quantity) {
+            return new Article(id, key, code, name, quantity, containerName, weight);
+        }
+
+        StockDto.ViewStockDto toDto() {
+            return new StockDto.ViewStockDto(id, code, name, quantity, containerName, weight);
+        }
+    }
+
+    // what a transaction did to a line: its state when known, null when deleted, otherwise what it added to the quantity
+    private record Change(Article state, boolean known, int quantityDelta) {
+
+        static Change of(Article state) {
+            return new Change(state, true, 0);
+        }
+
+        static Change delta(int quantityDelta) {
+            return new Change(null, false, quantityDelta);
+        }
+
+        Change then(Change next) {
+            if (next.known) return next;
+            if (!known) return delta(quantityDelta + next.quantityDelta);
+            return state == null ? this : of(next.on(state));
+        }
+
+        // the line after this change, given the line before it
+        Article on(Article current) {
+            if (known) return state;
+            return current == null ? null : current.withQuantity(current.quantity() + quantityDelta);
+        }
+    }
+
+    // lists are replaced, never changed in place, and a changed line is added before its previous version is
+    // removed, so readers need no lock and never miss a line that exists before and after the change
+    private static class Index {
+        private final Map<UUID, Article> byId = new ConcurrentHashMap<>();
+        private final Map<String, Article> byKey = new ConcurrentHashMap<>();
+        private final Map<String, List<Article>> byCode = new ConcurrentHashMap<>();
+        private final Map<String, List<Article>> byName = new ConcurrentHashMap<>();
+        private final ArticleSearchIndex search = new ArticleSearchIndex();
+
+        // false when the change is to a quantity this index does not have, and the line has to be read
+        boolean apply(String key, Change change) {
+            Article current = byKey.get(key);
+            if (!change.known() && current == null) return false;
+            Article next = change.on(current);
+            if (next != null) {
+                put(next);
+            } else if (current != null) {
+                remove(current);
+            }
+            return true;
+        }
+
+        void put(Article article) {
+            // a line renamed under the same id moves from its old entry
+            Article previous = byId.get(article.id());
+            if (article.equals(previous)) return;
+            // a line deleted and added again under the same key has a new id
+            Article replaced = byKey.get(article.key());
+            byId.put(article.id(), article);
+            byKey.put(article.key(), article);
+            replace(byCode, previous, article, Article::code);
+            replace(byName, previous, article, Article::name);
+            search.replace(previous, article);
+            if (previous != null && !previous.key().equals(article.key())) byKey.remove(previous.key(), previous);
+            if (replaced != null && !replaced.id().equals(article.id())) remove(replaced);
+        }
+
+        void remove(Article article) {
+            byId.remove(article.id(), article);
+            byKey.remove(article.key(), article);
+            drop(byCode, normalize(article.code()), article);
+            drop(byName, normalize(article.name()), article);
+            search.remove(article);
+        }
+
+        private static void replace(Map<String, List<Article>> map, Article previous, Article article,
+                                    Function<Article, String> field) {
+            String value = normalize(field.apply(article));
+            String previousValue = previous == null ? null : normalize(field.apply(previous));
+            if (value != null && !value.isEmpty()) {
+                // one step for the list both versions are in, so a reader sees either one or the other
+                map.compute(value, (key, existing) -> {
+                    List<Article> merged = new ArrayList<>();
+                    if (existing != null) {
+                        for (Article other : existing) {
+                            if (other != previous) merged.add(other);
+                        }
+                    }
+                    merged.add(article);
+                    return List.copyOf(merged);
+                });
+            }
+            if (previousValue != null && !previousValue.equals(value)) drop(map, previousValue, previous);
+        }
+
+        private static void drop(Map<String, List<Article>> map, String value, Article article) {
+            if (value == null || value.isEmpty()) return;
+            map.computeIfPresent(value, (key, existing) -> {
+                List<Article> left = existing.stream().filter(other -> other != article).toList();
+                return left.isEmpty() ? null : left;
+            });
+        }
+    }
+
+    private class PendingChanges implements TransactionSynchronization {
+        // lookup key -> what this transaction did to the line
+        private final Map<String, Change> changes = new LinkedHashMap<>();
+        private boolean all;
+
+        ArticleIndex owner() {
+            return ArticleIndex.this;
+        }
+
+        @Override
+        public void afterCommit() {
+            changes.forEach(ArticleIndex.this::apply);
+            if (all) requestRebuild();
+        }
+    }
+
+    private class StockChangeListener implements PostInsertEventListener, PostUpdateEventListener, PreDeleteEventListener {
+
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            if (event.getEntity() instanceof Stock stock) written(stock.getLookupKey(), Change.of(Article.of(stock)));
+        }
+
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            // a rename moves the line to a new key, the index drops the old one by the line's id
+            if (event.getEntity() instanceof Stock stock) written(stock.getLookupKey(), Change.of(Article.of(stock)));
+        }
+
+        @Override
+        public boolean onPreDelete(PreDeleteEvent event) {
+            if (event.getEntity() instanceof Stock) {
+                // the loaded state is what the row holds, even if the entity was changed before being removed
+                EntityEntry entry = event.getSession().getPersistenceContextInternal().getEntry(event.getEntity());
+                Object[] state = entry != null && entry.getLoadedState() != null ? entry.getLoadedState() : event.getDeletedState();
+                if (state[lookupKeyIndex] instanceof String key) written(key, Change.of(null));
+            }
+            return false;
+        }
+
+        @Override
+        public boolean requiresPostCommitHandling(EntityPersister persister) {
+            return false;
+        }
+    }
+}
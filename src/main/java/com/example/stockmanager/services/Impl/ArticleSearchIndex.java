@@ -0,0 +1,222 @@
+package com.example.stockmanager.services.Impl;
+
+import com.example.stockmanager.services.Impl.ArticleIndex.Article;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Word index behind the stock search. Every word of an article's code, name and container is indexed; the
+ * words are kept sorted for prefix matches and by trigram for typo-tolerant ones, scored the way pg_trgm
+ * scores similarity. Each search term has to match a word of the article, and articles are ranked by how
+ * well their words match: exact, then prefix, then similar. A term is only taken for a typo when no word
+ * starts with it, and a single letter only matches a word of its own, as a prefix it would match most of
+ * the catalogue.
+ * <p>
+ * Changed only under {@link ArticleIndex}'s write lock; searches run without a lock and may see a change
+ * half applied. A changed line is added before its previous version is removed, so at worst it shows up twice
+ * in one result, never not at all.
+ */
+final class ArticleSearchIndex {
+
+    // pg_trgm's default similarity threshold
+    private static final double MIN_SIMILARITY = 0.3;
+
+    private final Map<String, Word> vocabulary = new ConcurrentHashMap<>();
+    private final NavigableSet<String> sortedWords = new ConcurrentSkipListSet<>();
+    private final Map<String, Set<String>> wordsByTrigram = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<String>> wordsById = new ConcurrentHashMap<>();
+
+    void add(Article article) {
+        replace(null, article);
+    }
+
+    // previous is the line's version in the index, or null for a new line
+    void replace(Article previous, Article article) {
+        Set<String> words = words(article);
+        for (String text : words) {
+            vocabulary.computeIfAbsent(text, this::newWord).articles.add(article);
+        }
+        wordsById.put(article.id(), words);
+        if (previous == null) return;
+        for (String text : words(previous)) {
+            Word word = vocabulary.get(text);
+            if (word == null) continue;
+            word.articles.remove(previous);
+            if (word.articles.isEmpty()) dropWord(word);
+        }
+    }
+
+    void remove(Article article) {
+        wordsById.remove(article.id());
+        for (String text : words(article)) {
+            Word word = vocabulary.get(text);
+            if (word == null) continue;
+            word.articles.remove(article);
+            if (word.articles.isEmpty()) dropWord(word);
+        }
+    }
+
+    List<Article> search(String query, int limit) {
+        List<Map<String, Double>> terms = new ArrayList<>();
+        for (String term : tokens(query)) {
+            Map<String, Double> matches = matchingWords(term);
+            if (matches.isEmpty()) return List.of();
+            terms.add(matches);
+        }
+        if (terms.isEmpty()) return List.of();
+
+        // candidates come from the term on the fewest lines, the other terms are checked against their words
+        terms.sort(Comparator.comparingLong(this::lineCount));
+        // every line has a single Article instance in the index, no need to hash all its fields
+        Map<Article, Double> scores = new IdentityHashMap<>();
+        terms.get(0).forEach((text, score) -> {
+            Word word = vocabulary.get(text);
+            if (word == null) return;
+            for (Article article : word.articles) {
+                scores.merge(article, score, Math::max);
+            }
+        });
+        List<Map<String, Double>> others = terms.subList(1, terms.size());
+        for (Iterator<Map.Entry<Article, Double>> it = scores.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Article, Double> candidate = it.next();
+            double score = others.isEmpty() ? candidate.getValue() : score(candidate, others);
+            if (score == 0) {
+                it.remove();
+            } else {
+                candidate.setValue(score);
+            }
+        }
+        return best(scores, limit);
+    }
+
+    // the candidate's score with the best match of each other term added, or 0 when one does not match
+    private double score(Map.Entry<Article, Double> candidate, List<Map<String, Double>> others) {
+        Set<String> words = wordsById.get(candidate.getKey().id());
+        if (words == null) return 0;
+        double score = candidate.getValue();
+        for (Map<String, Double> matches : others) {
+            double best = 0;
+            for (String word : words) {
+                best = Math.max(best, matches.getOrDefault(word, 0.0));
+            }
+            if (best == 0) return 0;
+            score += best;
+        }
+        return score;
+    }
+
+    private long lineCount(Map<String, Double> matches) {
+        long lines = 0;
+        for (String text : matches.keySet()) {
+            Word word = vocabulary.get(text);
+            if (word != null) lines += word.articles.size();
+        }
+        return lines;
+    }
+
+    // a bounded heap, so a short query over a large catalogue never sorts every match
+    private static List<Article> best(Map<Article, Double> scores, int limit) {
+        Comparator<Map.Entry<Article, Double>> ranking = Map.Entry.<Article, Double>comparingByValue()
+                .thenComparing(entry -> entry.getKey().name(), Comparator.reverseOrder())
+                .thenComparing(entry -> entry.getKey().id());
+        PriorityQueue<Map.Entry<Article, Double>> top = new PriorityQueue<>(limit + 1, ranking);
+        for (Map.Entry<Article, Double> entry : scores.entrySet()) {
+            if (top.size() == limit && ranking.compare(entry, top.peek()) <= 0) continue;
+            top.offer(entry);
+            if (top.size() > limit) top.poll();
+        }
+        List<Article> result = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            result.add(top.poll().getKey());
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    // indexed words the term matches, with the score of each match
+    private Map<String, Double> matchingWords(String term) {
+        Map<String, Double> matches = new HashMap<>();
+        if (vocabulary.containsKey(term)) matches.put(term, 1.0);
+        if (term.length() < 2) return matches;
+        for (String text : sortedWords.subSet(term, false, term + Character.MAX_VALUE, false)) {
+            // a little less the more of a longer word is left untyped
+            matches.put(text, 0.9 + 0.1 * term.length() / text.length());
+        }
+        if (matches.isEmpty() && term.length() >= 3) addSimilarWords(term, matches);
+        return matches;
+    }
+
+    private void addSimilarWords(String term, Map<String, Double> matches) {
+        List<String> termTrigrams = new ArrayList<>(trigrams(term));
+        // a similar word shares at least this many trigrams with the term, so it has one of the rarest
+        // (size - required + 1) of them, and the common ones never need to be looked at
+        int required = Math.max(1, (int) Math.ceil(MIN_SIMILARITY * termTrigrams.size() - 1e-9));
+        termTrigrams.sort(Comparator.comparingInt(trigram -> wordsByTrigram.getOrDefault(trigram, Set.of()).size()));
+        Set<String> candidates = new HashSet<>();
+        for (String trigram : termTrigrams.subList(0, termTrigrams.size() - required + 1)) {
+            candidates.addAll(wordsByTrigram.getOrDefault(trigram, Set.of()));
+        }
+        for (String text : candidates) {
+            Word word = vocabulary.get(text);
+            if (word == null) continue;
+            int shared = 0;
+            for (String trigram : termTrigrams) {
+                if (word.trigrams.contains(trigram)) shared++;
+            }
+            double similarity = shared / (double) (termTrigrams.size() + word.trigrams.size() - shared);
+            if (similarity >= MIN_SIMILARITY) matches.put(text, 0.8 * similarity);
+        }
+    }
+
+    private Word newWord(String text) {
+        Word word = new Word(text, trigrams(text), ConcurrentHashMap.newKeySet());
+        sortedWords.add(text);
+        for (String trigram : word.trigrams) {
+            wordsByTrigram.computeIfAbsent(trigram, key -> ConcurrentHashMap.newKeySet()).add(text);
+        }
+        return word;
+    }
+
+    private void dropWord(Word word) {
+        vocabulary.remove(word.text, word);
+        sortedWords.remove(word.text);
+        for (String trigram : word.trigrams) {
+            wordsByTrigram.computeIfPresent(trigram, (key, texts) -> {
+                texts.remove(word.text);
+                return texts.isEmpty() ? null : texts;
+            });
+        }
+    }
+
+    private static Set<String> words(Article article) {
+        Set<String> words = new HashSet<>();
+        words.addAll(tokens(article.code()));
+        words.addAll(tokens(article.name()));
+        words.addAll(tokens(article.containerName()));
+        return words;
+    }
+
+    static List<String> tokens(String text) {
+        if (text == null) return List.of();
+        List<String> tokens = new ArrayList<>();
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) tokens.add(token);
+        }
+        return tokens;
+    }
+
+    // padded like pg_trgm: two spaces before the word and one after, so its start weighs more than its end
+    static Set<String> trigrams(String word) {
+        String padded = "  " + word + " ";
+        Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    private record Word(String text, Set<String> trigrams, Set<Article> articles) {
+    }
+}
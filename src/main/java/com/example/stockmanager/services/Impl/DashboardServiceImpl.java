@@ -0,0 +1,95 @@
+package com.example.stockmanager.services.Impl;
+
+import com.example.stockmanager.dtos.DashboardDto;
+import com.example.stockmanager.dtos.SalesDto;
+import com.example.stockmanager.entities.ContainerWeights;
+import com.example.stockmanager.services.DashboardServices;
+import com.example.stockmanager.services.StockServices;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Builds the front page in one call. The totals and recent sales are held in memory and read on the request
+ * thread without a transaction; only the container list needs the database, and it is fetched on a virtual
+ * thread meanwhile, so one dashboard takes at most one pooled connection. With {@code dashboard.cache-ttl}
+ * set, a snapshot is reused for that long.
+ */
+@Service
+@RequiredArgsConstructor
+public class DashboardServiceImpl implements DashboardServices {
+
+    private final StockServices stockService;
+    private final StockTotalsTracker stockTotals;
+    private final RecentSales recentSales;
+    private final Map<Boolean, CachedDashboard> cache = new ConcurrentHashMap<>();
+
+    @Value("${dashboard.cache-ttl:PT0S}")
+    private Duration cacheTtl;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    void start() {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public DashboardDto.ViewDashboardDto getDashboard(boolean includeContainers) {
+        if (cacheTtl.isZero() || cacheTtl.isNegative()) {
+            return load(includeContainers);
+        }
+        Instant now = Instant.now();
+        CachedDashboard cached = cache.get(includeContainers);
+        if (cached != null && now.isBefore(cached.expiresAt())) {
+            return cached.dashboard();
+        }
+        var dashboard = load(includeContainers);
+        cache.put(includeContainers, new CachedDashboard(dashboard, now.plus(cacheTtl)));
+        return dashboard;
+    }
+
+    private DashboardDto.ViewDashboardDto load(boolean includeContainers) {
+        var containers = includeContainers ? async(stockService::findAllContainers) : CompletableFuture.<List<String>>completedFuture(null);
+
+        // an empty shop is a normal front page, so an empty list of recent sales is not an error here
+        List<SalesDto.ViewSalesDto> sales = recentSales.latest();
+        Integer total = Math.toIntExact(stockTotals.total());
+        Integer stock75 = Math.toIntExact(stockTotals.total(ContainerWeights.KG_75));
+        Integer stock45 = Math.toIntExact(stockTotals.total(ContainerWeights.KG_45));
+        Integer bags = Math.toIntExact(stockTotals.total(ContainerWeights.BAGS));
+
+        try {
+            return new DashboardDto.ViewDashboardDto(total, stock75, stock45, bags, sales, containers.join(), Instant.now());
+        } catch (CompletionException e) {
+            // surface the service's own exception so GlobalErrorHandler maps it as usual
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    private <T> CompletableFuture<T> async(Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(supplier, executor);
+    }
+
+    private record CachedDashboard(DashboardDto.ViewDashboardDto dashboard, Instant expiresAt) {
+    }
+}
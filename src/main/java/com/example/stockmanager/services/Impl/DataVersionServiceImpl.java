@@ -0,0 +1,66 @@
+package com.example.stockmanager.services.Impl;
+
+import com.example.stockmanager.services.DataVersionServices;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.WebRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Change counters for the stock and sales tables, bumped by {@link LiveUpdates} after every committed
+ * change and, on PostgreSQL, by {@link StreamServiceImpl} for changes committed on other nodes.
+ * The counters start from a random epoch each time a node starts, so an ETag handed out before a restart
+ * or by another node never matches by accident.
+ */
+@Service
+public class DataVersionServiceImpl implements DataVersionServices {
+
+    private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE);
+    private final Map<Table, AtomicLong> versions = new EnumMap<>(Table.class);
+
+    public DataVersionServiceImpl() {
+        for (Table table : Table.values()) {
+            versions.put(table, new AtomicLong());
+        }
+    }
+
+    @Override
+    public boolean notModified(WebRequest request, Table table) {
+        return request.checkNotModified(epoch + "-" + versions.get(table).get() + "-" + variant(request));
+    }
+
+    // a sale moves stock as well; every other event is about stock
+    void changed(LiveEvent event) {
+        if (event.type().startsWith("SALE_")) {
+            versions.get(Table.SALES).incrementAndGet();
+        }
+        versions.get(Table.STOCK).incrementAndGet();
+    }
+
+    // the same data version serves every filter and page, so the parameters are part of the tag; a digest rather
+    // than a hash code, which two different sets of parameters can share
+    private static String variant(WebRequest request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            new TreeMap<>(request.getParameterMap()).forEach((name, values) -> {
+                digest.update(name.getBytes(StandardCharsets.UTF_8));
+                for (String value : values) {
+                    digest.update((byte) 0);
+                    digest.update(value.getBytes(StandardCharsets.UTF_8));
+                }
+                digest.update((byte) 1);
+            });
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.stockmanager.services.Impl;
+
+import com.example.stockmanager.entities.OutboxEvent;
+import com.example.stockmanager.entities.Sales;
+import com.example.stockmanager.entities.Stock;
+import com.example.stockmanager.events.SaleEvent;
+import com.example.stockmanager.events.StockEvent;
+import com.example.stockmanager.repositories.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Announces stock and sales changes. A compact version goes to the live stream through {@link LiveUpdates}.
+ * With {@code events.enabled}, the full event is also written to the outbox in the caller's transaction, so
+ * it exists exactly when the change it describes was committed, and {@link KafkaEventRelay} publishes it
+ * afterwards. Every event is keyed by the stock line's lookup key, which keeps all changes to one line in
+ * order on one partition.
+ */
+@Component
+@RequiredArgsConstructor
+public class DomainEvents {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+    private final LiveUpdates liveUpdates;
+
+    @Value("${events.enabled:false}")
+    private boolean enabled;
+
+    // one topic for stock and sales events, so a line's stock changes and sales stay in order with each other
+    @Value("${events.topic:stock-manager-events}")
+    private String topic;
+
+    public void stockChanged(String type, Stock stock, int quantityDelta, Integer quantity) {
+        String key = Stock.lookupKey(stock.getName(), stock.getWeight(), stock.getContainer_name());
+        Map<String, Object> live = new LinkedHashMap<>();
+        live.put("key", key);
+        live.put("weight", stock.getWeight());
+        live.put("delta", quantityDelta);
+        live.put("quantity", quantity);
+        liveUpdates.publish(type, live);
+
+        if (!enabled) return;
+        write(key, type, new StockEvent(type, stock.getId(), key, stock.getCode(), stock.getName(),
+                stock.getContainer_name(), stock.getWeight(), quantityDelta, quantity));
+    }
+
+    // a row of a bulk import; a row added to an existing line has neither its id nor its new level read back
+    public void stockAddedInBulk(Stock row, boolean inserted) {
+        if (!enabled) return;
+        String key = Stock.lookupKey(row.getName(), row.getWeight(), row.getContainer_name());
+        write(key, StockEvent.ADDED, new StockEvent(StockEvent.ADDED, inserted ? row.getId() : null, key, row.getCode(),
+                row.getName(), row.getContainer_name(), row.getWeight(), row.getQuantity(), inserted ? row.getQuantity() : null));
+    }
+
+    // live subscribers get one summary per import instead of an event per row
+    public void stockImported(int lines) {
+        liveUpdates.publish("STOCK_IMPORTED", Map.of("lines", lines));
+    }
+
+    public void saleChanged(String type, Sales sale) {
+        String key = Stock.lookupKey(sale.getName(), sale.getWeight(), sale.getContainerName());
+        Map<String, Object> live = new LinkedHashMap<>();
+        live.put("id", sale.getId());
+        live.put("key", key);
+        live.put("date", sale.getDate());
+        live.put("quantity", sale.getQuantity());
+        live.put("totalPrice", sale.getTotalPrice());
+        liveUpdates.publish(type, live);
+
+        if (!enabled) return;
+        write(key, type, new SaleEvent(type, sale.getId(), key, sale.getDate(), sale.getCode(), sale.getName(),
+                sale.getContainerName(), sale.getWeight(), sale.getQuantity(), sale.getPrice(), sale.getTotalPrice()));
+    }
+
+    private void write(String key, String type, Object event) {
+        try {
+            outboxEventRepository.save(new OutboxEvent(topic, key, type, objectMapper.writeValueAsString(event)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize " + event, e);
+        }
+    }
+}
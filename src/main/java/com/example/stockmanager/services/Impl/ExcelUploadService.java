@@ -2,18 +2,32 @@ package com.example.stockmanager.services.Impl;
 
 import com.example.stockmanager.entities.Stock;
 import com.example.stockmanager.entities.ContainerWeights;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
 import org.springframework.web.multipart.MultipartFile;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
 
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public class ExcelUploadService {
     private static final String EXCEL_CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
@@ -31,109 +45,217 @@ public class ExcelUploadService {
         return matchesMime || matchesExtension;
     }
 
-    private static boolean isRowEmpty(Row row) {
-        if (row == null) return true;
-        for (int c = 0; c < row.getLastCellNum(); c++) {
-            Cell cell = row.getCell(c);
-            if (cell != null && cell.getCellType() != CellType.BLANK &&
-                    !(cell.getCellType() == CellType.STRING && cell.getStringCellValue().trim().isEmpty())) {
-                return false;
+    /**
+     * Streams the first sheet of the workbook row by row with POI's event API, so memory stays flat
+     * however large the file is. Valid rows are handed to {@code chunkConsumer} in lists of at most
+     * {@code chunkSize}; the first invalid row aborts the read with an IllegalArgumentException.
+     *
+     * @return the number of stock rows read
+     */
+    public static int readStockData(File file, int chunkSize, Consumer<List<Stock>> chunkConsumer) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(pkg, false);
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                throw new IllegalArgumentException("The uploaded workbook does not contain any sheets.");
+            }
+
+            StockSheetHandler handler = new StockSheetHandler(sharedStrings, chunkSize, chunkConsumer);
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(handler);
+                parser.parse(new InputSource(sheet));
             }
+            return handler.finish();
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Could not parse the uploaded workbook.", e);
         }
-        return true;
     }
 
-    public static List<Stock> getStockDataFromExcel(InputStream inputStream) throws IOException {
-        List<Stock> stockList = new ArrayList<>();
+    private enum CellKind { STRING, NUMERIC, OTHER }
 
-        try (XSSFWorkbook workbook = new XSSFWorkbook(inputStream)) {
-            Sheet sheet = workbook.getNumberOfSheets() > 0 ? workbook.getSheetAt(0) : null;
-            if (sheet == null) {
-                throw new IllegalArgumentException("The uploaded workbook does not contain any sheets.");
+    private record RawCell(CellKind kind, String value) {
+    }
+
+    // SAX handler over sheetN.xml that rebuilds one row at a time and validates it like the old DOM reader did
+    private static class StockSheetHandler extends DefaultHandler {
+        private final ReadOnlySharedStringsTable sharedStrings;
+        private final int chunkSize;
+        private final Consumer<List<Stock>> chunkConsumer;
+
+        private final Map<Integer, RawCell> currentRow = new HashMap<>();
+        private final StringBuilder text = new StringBuilder();
+        private Map<String, Integer> headerIndex;
+        private List<Stock> chunk = new ArrayList<>();
+        private int rowIndex = -1;
+        private int nextRowIndex = 0;
+        private int rowsRead = 0;
+
+        private int cellColumn;
+        private String cellType;
+        private boolean collectingText;
+
+        StockSheetHandler(ReadOnlySharedStringsTable sharedStrings, int chunkSize, Consumer<List<Stock>> chunkConsumer) {
+            this.sharedStrings = sharedStrings;
+            this.chunkSize = chunkSize;
+            this.chunkConsumer = chunkConsumer;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "row" -> {
+                    String ref = attributes.getValue("r");
+                    rowIndex = ref != null ? Integer.parseInt(ref) - 1 : nextRowIndex;
+                    nextRowIndex = rowIndex + 1;
+                    currentRow.clear();
+                }
+                case "c" -> {
+                    String ref = attributes.getValue("r");
+                    cellColumn = ref != null ? new CellReference(ref).getCol() : currentRow.size();
+                    cellType = attributes.getValue("t");
+                    text.setLength(0);
+                }
+                case "v", "t" -> collectingText = true;
+                default -> {
+                }
             }
+        }
 
-            Row headerRow = sheet.getRow(0);
-            if (headerRow == null || isRowEmpty(headerRow)) {
-                throw new IllegalArgumentException("The first row must contain the headers: " + EXPECTED_HEADERS);
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (collectingText) {
+                text.append(ch, start, length);
             }
+        }
 
-            Map<String, Integer> headerIndex = extractHeaderIndex(headerRow);
-            if (!headerIndex.keySet().containsAll(EXPECTED_HEADERS)) {
-                throw new IllegalArgumentException("Excel file must contain the columns: " + EXPECTED_HEADERS);
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v", "t" -> collectingText = false;
+                case "c" -> currentRow.put(cellColumn, toRawCell(cellType, text.toString()));
+                case "row" -> processRow();
+                default -> {
+                }
             }
+        }
 
-            for (int rowIndex = 1; rowIndex <= sheet.getLastRowNum(); rowIndex++) {
-                Row row = sheet.getRow(rowIndex);
-                if (isRowEmpty(row)) {
-                    continue;
+        private RawCell toRawCell(String type, String value) {
+            if (value.isEmpty()) {
+                return null;
+            }
+            if (type == null || "n".equals(type)) {
+                return new RawCell(CellKind.NUMERIC, value);
+            }
+            return switch (type) {
+                case "s" -> new RawCell(CellKind.STRING, sharedStrings.getItemAt(Integer.parseInt(value.trim())).getString());
+                case "inlineStr", "str" -> new RawCell(CellKind.STRING, value);
+                default -> new RawCell(CellKind.OTHER, value);
+            };
+        }
+
+        private void processRow() {
+            if (headerIndex == null) {
+                if (rowIndex != 0 || isRowEmpty()) {
+                    throw new IllegalArgumentException("The first row must contain the headers: " + EXPECTED_HEADERS);
+                }
+                headerIndex = extractHeaderIndex();
+                if (!headerIndex.keySet().containsAll(EXPECTED_HEADERS)) {
+                    throw new IllegalArgumentException("Excel file must contain the columns: " + EXPECTED_HEADERS);
                 }
+                return;
+            }
+            if (isRowEmpty()) {
+                return;
+            }
 
-                Stock stock = new Stock();
-                String code = getOptionalString(row, headerIndex.get("code"));
-                stock.setCode(code != null && !code.isBlank() ? code : null);
+            Stock stock = new Stock();
+            String code = getOptionalString(currentRow.get(headerIndex.get("code")));
+            stock.setCode(code != null && !code.isBlank() ? code : null);
 
-                String name = getRequiredString(row, headerIndex.get("name"), rowIndex);
-                Integer quantity = getRequiredInteger(row, headerIndex.get("quantity"), rowIndex);
-                String containerName = getRequiredString(row, headerIndex.get("container_name"), rowIndex);
-                ContainerWeights weight = getRequiredWeight(row, headerIndex.get("weight"), rowIndex);
+            String name = getRequiredString(currentRow.get(headerIndex.get("name")), rowIndex);
+            Integer quantity = getRequiredInteger(currentRow.get(headerIndex.get("quantity")), rowIndex);
+            String containerName = getRequiredString(currentRow.get(headerIndex.get("container_name")), rowIndex);
+            ContainerWeights weight = getRequiredWeight(currentRow.get(headerIndex.get("weight")), rowIndex);
 
-                stock.setName(name);
-                stock.setQuantity(quantity);
-                stock.setContainer_name(containerName);
-                stock.setWeight(weight);
-                stockList.add(stock);
+            stock.setName(name);
+            stock.setQuantity(quantity);
+            stock.setContainer_name(containerName);
+            stock.setWeight(weight);
+            chunk.add(stock);
+            rowsRead++;
+
+            if (chunk.size() >= chunkSize) {
+                flushChunk();
             }
         }
 
-        return stockList;
-    }
+        private int finish() {
+            if (headerIndex == null) {
+                throw new IllegalArgumentException("The first row must contain the headers: " + EXPECTED_HEADERS);
+            }
+            flushChunk();
+            return rowsRead;
+        }
+
+        private void flushChunk() {
+            if (chunk.isEmpty()) return;
+            chunkConsumer.accept(chunk);
+            chunk = new ArrayList<>(chunkSize);
+        }
 
-    private static Map<String, Integer> extractHeaderIndex(Row headerRow) {
-        Map<String, Integer> headerIndex = new HashMap<>();
-        for (int cellIndex = 0; cellIndex < headerRow.getLastCellNum(); cellIndex++) {
-            Cell cell = headerRow.getCell(cellIndex, Row.MissingCellPolicy.RETURN_BLANK_AS_NULL);
-            if (cell == null || cell.getCellType() != CellType.STRING) {
-                continue;
+        private boolean isRowEmpty() {
+            for (RawCell cell : currentRow.values()) {
+                if (cell != null && !(cell.kind() == CellKind.STRING && cell.value().trim().isEmpty())) {
+                    return false;
+                }
             }
-            String headerName = cell.getStringCellValue().trim().toLowerCase(Locale.ROOT);
-            headerIndex.put(headerName, cellIndex);
+            return true;
+        }
+
+        private Map<String, Integer> extractHeaderIndex() {
+            Map<String, Integer> index = new HashMap<>();
+            currentRow.forEach((column, cell) -> {
+                if (cell != null && cell.kind() == CellKind.STRING) {
+                    index.put(cell.value().trim().toLowerCase(Locale.ROOT), column);
+                }
+            });
+            return index;
         }
-        return headerIndex;
     }
 
-    private static String getOptionalString(Row row, int cellIndex) {
-        Cell cell = row.getCell(cellIndex, Row.MissingCellPolicy.RETURN_BLANK_AS_NULL);
+    private static String getOptionalString(RawCell cell) {
         if (cell == null) {
             return null;
         }
-        if (cell.getCellType() == CellType.STRING) {
-            return cell.getStringCellValue().trim();
+        if (cell.kind() == CellKind.STRING) {
+            return cell.value().trim();
         }
-        if (cell.getCellType() == CellType.NUMERIC) {
-            return String.valueOf((long) cell.getNumericCellValue());
+        if (cell.kind() == CellKind.NUMERIC) {
+            return String.valueOf((long) Double.parseDouble(cell.value()));
         }
         return null;
     }
 
-    private static String getRequiredString(Row row, int cellIndex, int rowIndex) {
-        String value = getOptionalString(row, cellIndex);
+    private static String getRequiredString(RawCell cell, int rowIndex) {
+        String value = getOptionalString(cell);
         if (value == null || value.isBlank()) {
             throw new IllegalArgumentException("Row " + (rowIndex + 1) + ": mandatory text value missing.");
         }
         return value.trim();
     }
 
-    private static Integer getRequiredInteger(Row row, int cellIndex, int rowIndex) {
-        Cell cell = row.getCell(cellIndex, Row.MissingCellPolicy.RETURN_BLANK_AS_NULL);
+    private static Integer getRequiredInteger(RawCell cell, int rowIndex) {
         if (cell == null) {
             throw new IllegalArgumentException("Row " + (rowIndex + 1) + ": quantity is missing.");
         }
-        if (cell.getCellType() == CellType.NUMERIC) {
-            return (int) cell.getNumericCellValue();
+        if (cell.kind() == CellKind.NUMERIC) {
+            return (int) Double.parseDouble(cell.value());
         }
-        if (cell.getCellType() == CellType.STRING) {
+        if (cell.kind() == CellKind.STRING) {
             try {
-                return Integer.parseInt(cell.getStringCellValue().trim());
+                return Integer.parseInt(cell.value().trim());
             } catch (NumberFormatException ex) {
                 throw new IllegalArgumentException("Row " + (rowIndex + 1) + ": quantity must be numeric.");
             }
@@ -141,8 +263,8 @@ public class ExcelUploadService {
         throw new IllegalArgumentException("Row " + (rowIndex + 1) + ": quantity must be numeric.");
     }
 
-    private static ContainerWeights getRequiredWeight(Row row, int cellIndex, int rowIndex) {
-        String value = getOptionalString(row, cellIndex);
+    private static ContainerWeights getRequiredWeight(RawCell cell, int rowIndex) {
+        String value = getOptionalString(cell);
         if (value == null) {
             throw new IllegalArgumentException("Row " + (rowIndex + 1) + ": weight is missing.");
         }
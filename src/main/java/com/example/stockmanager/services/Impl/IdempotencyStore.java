@@ -0,0 +1,140 @@
+package com.example.stockmanager.services.Impl;
+
+import com.example.stockmanager.entities.IdempotencyRecord;
+import com.example.stockmanager.repositories.IdempotencyRecordRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Responses to writes sent with an {@code Idempotency-Key}, kept for {@code idempotency.ttl} in the
+ * idempotency_keys table. A request first reserves its key, which only one request can do, and then either
+ * completes it with its response or releases it again. A reservation is a lease of {@code idempotency.lease}:
+ * one left behind by a request that never finished, such as one cut off by a crash, can be taken over by a
+ * retry once it runs out. Completed responses never change, so the most used of them are also kept in memory,
+ * up to {@code idempotency.cache-size}, and a retry costs no query.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IdempotencyStore {
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${idempotency.ttl:PT24H}")
+    private Duration ttl;
+
+    @Value("${idempotency.lease:PT2M}")
+    private Duration lease;
+
+    @Value("${idempotency.cache-size:10000}")
+    private int maxCached;
+
+    private Cache<String, StoredResponse> completed;
+
+    @PostConstruct
+    void createCache() {
+        completed = Caffeine.newBuilder()
+                .maximumSize(maxCached)
+                .expireAfter(Expiry.creating((String id, StoredResponse stored) ->
+                        Duration.between(Instant.now(), stored.expiresAt())))
+                .build();
+    }
+
+    // the response stored under the id, or null when there is none; one without a status is still being processed
+    public StoredResponse find(String id) {
+        StoredResponse cached = completed.getIfPresent(id);
+        if (cached != null) {
+            return cached;
+        }
+        Instant now = Instant.now();
+        StoredResponse stored = idempotencyRecordRepository.findById(id)
+                .filter(record -> now.isBefore(record.getExpiresAt()))
+                .map(StoredResponse::of)
+                .orElse(null);
+        if (stored != null && stored.completed()) completed.put(id, stored);
+        return stored;
+    }
+
+    // the reservation to complete or release the id with, or null when another request holds it
+    public UUID reserve(String id, String requestHash) {
+        Instant now = Instant.now();
+        UUID reservation = UUID.randomUUID();
+        try {
+            boolean reserved = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                IdempotencyRecord existing = entityManager.find(IdempotencyRecord.class, id);
+                if (existing != null) {
+                    if (now.isBefore(existing.getExpiresAt())) return false;
+                    // expired, or a lease that ran out
+                    entityManager.remove(existing);
+                    entityManager.flush();
+                }
+                // persist rather than merge, so of two requests reserving at once the second fails on the key
+                entityManager.persist(new IdempotencyRecord(id, requestHash, reservation, now.plus(lease)));
+                entityManager.flush();
+                return true;
+            }));
+            return reserved ? reservation : null;
+        } catch (PersistenceException | DataIntegrityViolationException e) {
+            return null;
+        }
+    }
+
+    public void complete(String id, UUID reservation, int status, String contentType, String body) {
+        Instant now = Instant.now();
+        IdempotencyRecord record = transactionTemplate.execute(tx -> {
+            IdempotencyRecord reserved = entityManager.find(IdempotencyRecord.class, id);
+            // taken over by a retry after the lease ran out
+            if (reserved == null || !reservation.equals(reserved.getReservation()) || reserved.getStatus() != null) return null;
+            reserved.setStatus(status);
+            reserved.setContentType(contentType);
+            reserved.setBody(body);
+            reserved.setExpiresAt(now.plus(ttl));
+            return reserved;
+        });
+        if (record != null) completed.put(id, StoredResponse.of(record));
+    }
+
+    public void release(String id, UUID reservation) {
+        transactionTemplate.executeWithoutResult(status -> idempotencyRecordRepository.release(id, reservation));
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.purge-interval:PT1H}")
+    public void purgeExpired() {
+        Integer purged = transactionTemplate.execute(status -> idempotencyRecordRepository.deleteExpired(Instant.now()));
+        if (purged != null && purged > 0) {
+            log.info("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    public record StoredResponse(String requestHash, Integer status, String contentType, String body, Instant expiresAt) {
+
+        static StoredResponse of(IdempotencyRecord record) {
+            return new StoredResponse(record.getRequestHash(), record.getStatus(), record.getContentType(),
+                    record.getBody(), record.getExpiresAt());
+        }
+
+        public boolean completed() {
+            return status != null;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.stockmanager.services.Impl;
+
+import com.example.stockmanager.dtos.ImportJobDto;
+import com.example.stockmanager.entities.ImportJobStatus;
+import com.example.stockmanager.services.StockImportProgress;
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+// progress of one background stock import, updated by the worker and read by the status endpoint
+@Getter
+class ImportJob implements StockImportProgress {
+    private final UUID id = UUID.randomUUID();
+    private final String fileName;
+    private final Path spooledFile;
+    private final Instant submittedAt = Instant.now();
+    private final AtomicLong rowsParsed = new AtomicLong();
+    private final AtomicLong rowsApplied = new AtomicLong();
+    private final List<String> errors = new CopyOnWriteArrayList<>();
+    private volatile ImportJobStatus status = ImportJobStatus.QUEUED;
+    private volatile Integer processedItems;
+    private volatile Instant finishedAt;
+
+    ImportJob(String fileName, Path spooledFile) {
+        this.fileName = fileName;
+        this.spooledFile = spooledFile;
+    }
+
+    @Override
+    public void rowsParsed(int rows) {
+        rowsParsed.addAndGet(rows);
+    }
+
+    @Override
+    public void rowsApplied(int rows) {
+        rowsApplied.addAndGet(rows);
+    }
+
+    void started() {
+        status = ImportJobStatus.RUNNING;
+    }
+
+    void completed(int items) {
+        processedItems = items;
+        finishedAt = Instant.now();
+        status = ImportJobStatus.COMPLETED;
+    }
+
+    void failed(String error) {
+        // the chunks counted in rowsApplied stay committed, the failing one was rolled back
+        errors.add(error);
+        finishedAt = Instant.now();
+        status = ImportJobStatus.FAILED;
+    }
+
+    boolean isFinished() {
+        return finishedAt != null;
+    }
+
+    ImportJobDto.ViewImportJobDto toDto() {
+        return new ImportJobDto.ViewImportJobDto(id, fileName, status, rowsParsed.get(), rowsApplied.get(),
+                processedItems, List.copyOf(errors), submittedAt, finishedAt);
+    }
+}
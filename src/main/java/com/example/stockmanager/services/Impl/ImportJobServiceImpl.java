@@ -0,0 +1,128 @@
+package com.example.stockmanager.services.Impl;
+
+import com.example.stockmanager.dtos.ImportJobDto;
+import com.example.stockmanager.exceptions.ServiceBusyException;
+import com.example.stockmanager.services.ImportJobServices;
+import com.example.stockmanager.services.StockServices;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.errors.ResourceNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs stock file imports in the background. Uploads are spooled to disk and processed on virtual
+ * threads; a semaphore caps how many imports hit the database at once so they cannot starve the
+ * sales endpoints of connections, and the number of waiting jobs is bounded as well.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ImportJobServiceImpl implements ImportJobServices {
+
+    private final StockServices stockService;
+    private final Map<UUID, ImportJob> jobs = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingJobs = new AtomicInteger();
+
+    @Value("${stock.import.max-concurrent:2}")
+    private int maxConcurrentImports;
+
+    @Value("${stock.import.max-queued:10}")
+    private int maxQueuedImports;
+
+    @Value("${stock.import.spool-dir:${java.io.tmpdir}/stock-imports}")
+    private Path spoolDirectory;
+
+    @Value("${stock.import.retention:PT1H}")
+    private Duration retention;
+
+    private ExecutorService executor;
+    private Semaphore importSlots;
+
+    @PostConstruct
+    void start() throws IOException {
+        Files.createDirectories(spoolDirectory);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        importSlots = new Semaphore(maxConcurrentImports, true);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public ImportJobDto.ViewImportJobDto submitStockImport(MultipartFile file) {
+        if (!ExcelUploadService.isValidExcelFile(file)) {
+            throw new IllegalArgumentException("Please upload a .xlsx file that matches the Stock template.");
+        }
+        evictFinishedJobs();
+        if (pendingJobs.incrementAndGet() > maxConcurrentImports + maxQueuedImports) {
+            pendingJobs.decrementAndGet();
+            throw new ServiceBusyException("Too many stock imports are in progress, please try again later.");
+        }
+
+        ImportJob job;
+        try {
+            Path spooled = Files.createTempFile(spoolDirectory, "stock-import-", ".xlsx");
+            file.transferTo(spooled);
+            job = new ImportJob(file.getOriginalFilename(), spooled);
+        } catch (IOException e) {
+            pendingJobs.decrementAndGet();
+            throw new IllegalArgumentException("Could not read the uploaded file. Please try again.", e);
+        }
+
+        jobs.put(job.getId(), job);
+        executor.submit(() -> run(job));
+        return job.toDto();
+    }
+
+    @Override
+    public ImportJobDto.ViewImportJobDto getJob(UUID id) {
+        var job = jobs.get(id);
+        if (job == null) throw new ResourceNotFoundException("Import job not found");
+        return job.toDto();
+    }
+
+    private void run(ImportJob job) {
+        try {
+            importSlots.acquire();
+            try {
+                job.started();
+                job.completed(stockService.importStockFile(job.getSpooledFile(), job));
+            } finally {
+                importSlots.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.failed("The import was interrupted before it finished.");
+        } catch (RuntimeException e) {
+            log.warn("Stock import {} failed: {}", job.getId(), e.getMessage());
+            job.failed(e.getMessage());
+        } finally {
+            pendingJobs.decrementAndGet();
+            StockServiceImpl.deleteQuietly(job.getSpooledFile());
+        }
+    }
+
+    private void evictFinishedJobs() {
+        Instant cutoff = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(cutoff));
+    }
+}
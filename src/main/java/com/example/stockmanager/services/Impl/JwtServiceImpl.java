@@ -1,14 +1,23 @@
 package com.example.stockmanager.services.Impl;
 
+import com.example.stockmanager.entities.Users;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -20,17 +29,65 @@ public class JwtServiceImpl {
     @Value("${jwt.secret}")
     private String SECRET_KEY;
 
+    // tokens already verified, so repeat requests with the same token skip the HMAC check
+    @Value("${jwt.verified-cache-size:1024}")
+    private int verifiedCacheSize;
+
+    private SecretKey signInKey;
+    private JwtParser parser;
+    private Cache<String, VerifiedToken> verifiedTokens;
+
+    @PostConstruct
+    void init() {
+        // decoding the secret and building the parser is done once, not per request
+        signInKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET_KEY));
+        parser = Jwts.parser().verifyWith(signInKey).build();
+        // lock-free reads, every request goes through here
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheSize)
+                .expireAfter(Expiry.creating((String token, VerifiedToken verified) ->
+                        Duration.between(Instant.now(), verified.expiresAt())))
+                .build();
+    }
+
+    /**
+     * Verifies the signature and expiry of a token and returns its claims. Each distinct token is
+     * parsed once; later calls are served from a bounded cache until the token expires.
+     *
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, forged or expired
+     */
+    public VerifiedToken verify(String token) {
+        VerifiedToken verified = verifiedTokens.getIfPresent(token);
+        if (verified != null) {
+            if (!verified.isExpired()) {
+                return verified;
+            }
+            verifiedTokens.invalidate(token);
+            throw new ExpiredJwtException(null, verified.claims(), "JWT expired at " + verified.expiresAt());
+        }
+
+        verified = new VerifiedToken(parser.parseSignedClaims(token).getPayload());
+        verifiedTokens.put(token, verified);
+        return verified;
+    }
+
     public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+        return verify(token).subject();
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> claimResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimResolver.apply(claims);
+        return claimResolver.apply(verify(token).claims());
     }
 
+    // the uid, role and version claims let the filter build the principal without loading the user
     public String generateToken(UserDetails userDetails) {
-        return generateToken(new HashMap<>(), userDetails);
+        Map<String, Object> claims = new HashMap<>();
+        if (userDetails instanceof Users user) {
+            claims.put(VerifiedToken.USER_ID_CLAIM, user.getId().toString());
+            claims.put(VerifiedToken.ROLE_CLAIM, user.getRole().name());
+            claims.put(VerifiedToken.VERSION_CLAIM, user.getTokenVersion());
+        }
+        return generateToken(claims, userDetails);
 
     }
 
@@ -44,36 +101,16 @@ public class JwtServiceImpl {
                 .subject(userDetails.getUsername())
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60 * 24))
-                .signWith(getSignInKey())
+                .signWith(signInKey)
                 .compact();
     }
 
-    public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
-    }
-
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    public boolean isTokenValid(VerifiedToken token, UserDetails userDetails) {
+        return token.subject().equals(userDetails.getUsername()) && !token.isExpired();
     }
 
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
-    }
-
-    private Claims extractAllClaims(String token) {
-        return Jwts
-                .parser()
-                .verifyWith(getSignInKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
-
-    }
-
-    private SecretKey getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(SECRET_KEY);
-        return Keys.hmacShaKeyFor(keyBytes);
+    public boolean isTokenValid(String token, UserDetails userDetails) {
+        return isTokenValid(verify(token), userDetails);
     }
 
 }
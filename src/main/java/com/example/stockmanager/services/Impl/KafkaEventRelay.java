@@ -0,0 +1,119 @@
+package com.example.stockmanager.services.Impl;
+
+import com.example.stockmanager.entities.OutboxEvent;
+import com.example.stockmanager.repositories.OutboxEventRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Publishes the event outbox to Kafka, oldest first, in batches of {@code events.relay.batch-size}.
+ * <p>
+ * Delivery is at least once: a row is marked published only after the broker acknowledged it, so a crash
+ * in between sends it again. When a send fails, every later event with the same key stays pending too,
+ * so the key's events are sent again in their original order on the next run.
+ * <p>
+ * The batch stays locked while it is sent, so that a second relay cannot publish a key's later events before
+ * this one's are acknowledged. The wait for the broker is bounded by {@code events.relay.send-timeout} for the
+ * whole batch, which is how long the locks are held at most; whatever is not acknowledged by then is retried.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "events.enabled", havingValue = "true")
+public class KafkaEventRelay {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${events.relay.batch-size:200}")
+    private int batchSize;
+
+    @Value("${events.relay.send-timeout:PT5S}")
+    private Duration sendTimeout;
+
+    @Value("${events.outbox.retention:P7D}")
+    private Duration retention;
+
+    @Scheduled(fixedDelayString = "${events.relay.poll-interval:PT1S}")
+    public void relay() {
+        try {
+            int published;
+            do {
+                published = publishPending();
+            } while (published == batchSize);
+        } catch (PessimisticLockingFailureException e) {
+            log.debug("Another relay is publishing the outbox, skipping this run");
+        }
+    }
+
+    // one batch; returns the number of events published
+    public int publishPending() {
+        Integer published = transactionTemplate.execute(status -> {
+            List<OutboxEvent> pending = outboxEventRepository.lockPending(Limit.of(batchSize));
+            if (pending.isEmpty()) return 0;
+
+            List<CompletableFuture<SendResult<String, String>>> sends = new ArrayList<>(pending.size());
+            for (OutboxEvent event : pending) {
+                sends.add(kafkaTemplate.send(event.getTopic(), event.getKey(), event.getPayload()));
+            }
+            long deadline = System.nanoTime() + sendTimeout.toNanos();
+
+            Instant now = Instant.now();
+            Set<String> failedKeys = new HashSet<>();
+            int sent = 0;
+            for (int i = 0; i < pending.size(); i++) {
+                OutboxEvent event = pending.get(i);
+                if (!failedKeys.contains(event.getKey()) && acknowledged(sends.get(i), event, deadline)) {
+                    event.setPublishedAt(now);
+                    sent++;
+                } else {
+                    failedKeys.add(event.getKey());
+                }
+            }
+            return sent;
+        });
+        return published == null ? 0 : published;
+    }
+
+    private boolean acknowledged(CompletableFuture<SendResult<String, String>> send, OutboxEvent event, long deadline) {
+        try {
+            send.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Could not publish event {} ({}) to {}, will retry: {}", event.getId(), event.getType(), event.getTopic(), e.getMessage());
+            return false;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${events.outbox.purge-interval:PT1H}")
+    public void purgePublished() {
+        Integer purged = transactionTemplate.execute(status -> outboxEventRepository.deletePublishedBefore(Instant.now().minus(retention)));
+        if (purged != null && purged > 0) {
+            log.info("Purged {} published events from the outbox", purged);
+        }
+    }
+}
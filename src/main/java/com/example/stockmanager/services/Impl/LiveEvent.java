@@ -0,0 +1,5 @@
+package com.example.stockmanager.services.Impl;
+
+// one event on the live stream: the SSE event name and its JSON data
+record LiveEvent(String type, String data) {
+}
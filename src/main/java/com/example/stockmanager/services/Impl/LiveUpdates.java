@@ -0,0 +1,106 @@
+package com.example.stockmanager.services.Impl;
+
+import com.example.stockmanager.entities.ContainerWeights;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the live-stream events of the current transaction and releases them only if it commits, followed by
+ * one TOTALS event with the stock totals as they stand after it. On PostgreSQL they are sent with
+ * {@code pg_notify} inside the transaction, which the database delivers to every node on commit.
+ */
+@Component
+@RequiredArgsConstructor
+public class LiveUpdates {
+
+    private final StreamServiceImpl streamService;
+    private final DataVersionServiceImpl dataVersions;
+    private final StockTotalsTracker stockTotals;
+    private final ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public void publish(String type, Map<String, Object> data) {
+        LiveEvent event = new LiveEvent(type, toJson(data));
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            dataVersions.changed(event);
+            streamService.deliver(event);
+            return;
+        }
+        pending().events.add(event);
+    }
+
+    private PendingEvents pending() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingEvents pending && pending.owner() == this) {
+                return pending;
+            }
+        }
+        PendingEvents pending = new PendingEvents();
+        TransactionSynchronizationManager.registerSynchronization(pending);
+        return pending;
+    }
+
+    private LiveEvent totals() {
+        Map<String, Object> totals = new LinkedHashMap<>();
+        totals.put("total", stockTotals.total());
+        Map<ContainerWeights, Long> byWeight = new EnumMap<>(ContainerWeights.class);
+        for (ContainerWeights weight : ContainerWeights.values()) {
+            byWeight.put(weight, stockTotals.total(weight));
+        }
+        totals.put("byWeight", byWeight);
+        // what this transaction changed, for the other nodes' in-memory totals
+        totals.put("changed", stockTotals.pendingChanges());
+        return new LiveEvent("TOTALS", toJson(totals));
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize live event", e);
+        }
+    }
+
+    private class PendingEvents implements TransactionSynchronization {
+        private final List<LiveEvent> events = new ArrayList<>();
+
+        LiveUpdates owner() {
+            return LiveUpdates.this;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            // the totals include this transaction's own changes, so they are what the stock is once it commits
+            events.add(totals());
+            if (!streamService.notifiesThroughDatabase()) return;
+            for (LiveEvent event : events) {
+                entityManager.createNativeQuery("SELECT pg_notify(:channel, :payload)")
+                        .setParameter("channel", StreamServiceImpl.CHANNEL)
+                        .setParameter("payload", "{\"node\":" + toJson(StreamServiceImpl.NODE_ID) + ",\"type\":" + toJson(event.type()) + ",\"data\":" + event.data() + "}")
+                        .getSingleResult();
+            }
+        }
+
+        @Override
+        public void afterCommit() {
+            // versions move right away on this node, so a client reading its own write never gets a stale 304
+            events.forEach(dataVersions::changed);
+            if (streamService.notifiesThroughDatabase()) return;
+            events.forEach(streamService::deliver);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.stockmanager.services.Impl;
+
+import com.example.stockmanager.entities.MailStatus;
+import com.example.stockmanager.entities.OutboundMail;
+import com.example.stockmanager.repositories.OutboundMailRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Sends the mail outbox in the background. Each run claims up to {@code mail.outbox.batch-size} due mails
+ * and hands them to the mail sender in one call, which delivers them over a single SMTP connection.
+ * Claiming and recording the outcome are short transactions of their own, so no row lock or connection is
+ * held while talking to the SMTP server. A claim is a lease of {@code mail.outbox.lease}: mails claimed by a
+ * dispatcher that never reported back are due again once it runs out.
+ * A failed mail is retried with exponential backoff and marked {@link MailStatus#DEAD} after
+ * {@code mail.outbox.max-attempts}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MailDispatcher {
+
+    private static final Set<MailStatus> CLAIMABLE = EnumSet.of(MailStatus.PENDING, MailStatus.SENDING);
+
+    private final OutboundMailRepository outboundMailRepository;
+    private final JavaMailSenderImpl mailSender;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${mail.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${mail.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${mail.outbox.initial-backoff:PT30S}")
+    private Duration initialBackoff;
+
+    @Value("${mail.outbox.max-backoff:PT1H}")
+    private Duration maxBackoff;
+
+    @Value("${mail.outbox.lease:PT5M}")
+    private Duration lease;
+
+    @Scheduled(fixedDelayString = "${mail.outbox.poll-interval:PT5S}")
+    public int dispatch() {
+        Instant now = Instant.now();
+        // millisecond precision survives the round trip through every database, so the lease identifies the claim
+        Instant leaseUntil = now.plus(lease).truncatedTo(ChronoUnit.MILLIS);
+        List<OutboundMail> claimed = transactionTemplate.execute(status -> {
+            List<OutboundMail> due = outboundMailRepository.lockDue(CLAIMABLE, now, Limit.of(batchSize));
+            for (OutboundMail mail : due) {
+                mail.setStatus(MailStatus.SENDING);
+                mail.setNextAttemptAt(leaseUntil);
+            }
+            return due;
+        });
+        if (claimed == null || claimed.isEmpty()) return 0;
+
+        Map<SimpleMailMessage, UUID> batch = new IdentityHashMap<>();
+        for (OutboundMail mail : claimed) {
+            SimpleMailMessage message = new SimpleMailMessage();
+            message.setTo(mail.getRecipient());
+            message.setSubject(mail.getSubject());
+            message.setText(mail.getBody());
+            batch.put(message, mail.getId());
+        }
+
+        Map<Object, Exception> failures = new IdentityHashMap<>();
+        try {
+            mailSender.send(batch.keySet().toArray(SimpleMailMessage[]::new));
+        } catch (MailSendException e) {
+            if (e.getFailedMessages().isEmpty()) {
+                // nothing was sent, e.g. the connection could not be opened
+                batch.keySet().forEach(message -> failures.put(message, e));
+            } else {
+                failures.putAll(e.getFailedMessages());
+            }
+        } catch (MailException e) {
+            batch.keySet().forEach(message -> failures.put(message, e));
+        }
+
+        Map<UUID, Exception> outcomes = new HashMap<>();
+        batch.forEach((message, id) -> outcomes.put(id, failures.get(message)));
+        Instant finished = Instant.now();
+        int sent = Objects.requireNonNull(transactionTemplate.execute(status -> {
+            int recorded = 0;
+            for (OutboundMail mail : outboundMailRepository.findAllById(outcomes.keySet())) {
+                // another dispatcher took the mail over after the lease ran out
+                if (mail.getStatus() != MailStatus.SENDING || !leaseUntil.equals(mail.getNextAttemptAt())) continue;
+                Exception failure = outcomes.get(mail.getId());
+                if (failure == null) {
+                    mail.setStatus(MailStatus.SENT);
+                    mail.setSentAt(finished);
+                    recorded++;
+                } else {
+                    retryLater(mail, failure, finished);
+                }
+            }
+            return recorded;
+        }));
+        log.debug("Mail outbox: {} sent, {} failed", sent, batch.size() - sent);
+        return sent;
+    }
+
+    private void retryLater(OutboundMail mail, Exception failure, Instant now) {
+        mail.setAttempts(mail.getAttempts() + 1);
+        String error = String.valueOf(failure.getMessage());
+        mail.setLastError(error.length() > 1000 ? error.substring(0, 1000) : error);
+        if (mail.getAttempts() >= maxAttempts) {
+            mail.setStatus(MailStatus.DEAD);
+            log.error("Giving up on mail {} to {} after {} attempts: {}", mail.getId(), mail.getRecipient(), mail.getAttempts(), error);
+            return;
+        }
+        mail.setStatus(MailStatus.PENDING);
+        Duration backoff = initialBackoff.multipliedBy(1L << Math.min(mail.getAttempts() - 1, 20));
+        mail.setNextAttemptAt(now.plus(backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff));
+    }
+}
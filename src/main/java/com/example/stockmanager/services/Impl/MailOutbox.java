@@ -0,0 +1,18 @@
+package com.example.stockmanager.services.Impl;
+
+import com.example.stockmanager.entities.OutboundMail;
+import com.example.stockmanager.repositories.OutboundMailRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+// queues mail in the caller's transaction; MailDispatcher sends it once that transaction has committed
+@Component
+@RequiredArgsConstructor
+public class MailOutbox {
+
+    private final OutboundMailRepository outboundMailRepository;
+
+    public void enqueue(String to, String subject, String text) {
+        outboundMailRepository.save(new OutboundMail(to, subject, text));
+    }
+}
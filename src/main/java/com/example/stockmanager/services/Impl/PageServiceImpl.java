@@ -1,15 +1,27 @@
 package com.example.stockmanager.services.Impl;
 
 import com.example.stockmanager.dtos.PageDto;
+import com.example.stockmanager.dtos.SliceDto;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 
 @Service
 public class PageServiceImpl {
     public Pageable getPageable(PageDto pageDto) {
         int page = pageDto.getPage() != null ? pageDto.getPage() : 0;
-        int size = pageDto.getSize() != null ? pageDto.getSize() : 5;
-        return PageRequest.of(page, size);
+        return PageRequest.of(page, getSize(pageDto.getSize()));
+    }
+
+    public int getSize(Integer size) {
+        if (size != null && size < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+        return size != null ? size : 5;
+    }
+
+    public <T> SliceDto<T> toSliceDto(Slice<T> slice, Long estimatedTotal) {
+        return new SliceDto<>(slice.getContent(), slice.getNumber(), slice.getSize(), slice.hasNext(), estimatedTotal);
     }
 }
@@ -0,0 +1,226 @@
+package com.example.stockmanager.services.Impl;
+
+import com.example.stockmanager.dtos.SalesDto;
+import com.example.stockmanager.entities.Sales;
+import com.example.stockmanager.mappers.SalesMapper;
+import com.example.stockmanager.repositories.SalesRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * The newest sales in memory, for {@code /api/v1/sales/recent}. They are held newest first in a fixed-size list
+ * that is replaced as a whole by compare-and-set, so readers take no lock and never see half a change.
+ * <p>
+ * Loaded at startup. Sales written through the persistence context are applied once their transaction commits,
+ * picked up from Hibernate's events. A few more sales are held than are served, so a deleted one leaves no gap;
+ * once deletions leave too few, or a sale changes on another node, the next read loads them again. A transaction
+ * that changed sales itself reads them from the database, so it sees its own uncommitted changes.
+ */
+@Component
+@RequiredArgsConstructor
+public class RecentSales {
+
+    // by creation, then by date for sales recorded before creation times were, then by id the way the databases order UUIDs
+    static final Comparator<SalesDto.ViewSalesDto> NEWEST_FIRST = Comparator
+            .comparing(SalesDto.ViewSalesDto::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(SalesDto.ViewSalesDto::getDate, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(sale -> sale.getId().toString())
+            .reversed();
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final SalesRepository salesRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${sales.recent.size:10}")
+    private int size;
+
+    @Value("${sales.recent.capacity:50}")
+    private int capacity;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.unloaded());
+
+    @PostConstruct
+    void registerListeners() {
+        var listener = new SalesChangeListener();
+        var registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, listener);
+        registry.appendListeners(EventType.POST_UPDATE, listener);
+        registry.appendListeners(EventType.POST_DELETE, listener);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        reload(snapshot.get());
+    }
+
+    public List<SalesDto.ViewSalesDto> latest() {
+        if (ownChanges() != null) {
+            return salesRepository.getRecentSales(Limit.of(size));
+        }
+        Snapshot current = snapshot.get();
+        if (current.stale() || (!current.complete() && current.sales().size() < size)) {
+            current = reload(current);
+        }
+        List<SalesDto.ViewSalesDto> sales = current.sales();
+        return sales.size() > size ? sales.subList(0, size) : sales;
+    }
+
+    // a change committed on another node, as announced on the live stream
+    void changed(LiveEvent event) {
+        if (event.type().startsWith("SALE_")) snapshot.updateAndGet(current -> Snapshot.unloaded());
+    }
+
+    private Snapshot reload(Snapshot before) {
+        List<SalesDto.ViewSalesDto> rows = salesRepository.getRecentSales(Limit.of(capacity));
+        Snapshot loaded = new Snapshot(List.copyOf(rows), rows.size() < capacity, false);
+        // a change applied meanwhile may be missing from the rows: the buffer is left as it is then, and loaded
+        // again by the next read
+        snapshot.compareAndSet(before, loaded);
+        return loaded;
+    }
+
+    private Snapshot recorded(Snapshot current, SalesDto.ViewSalesDto sale) {
+        if (current.stale()) return Snapshot.unloaded();
+        List<SalesDto.ViewSalesDto> sales = without(current.sales(), sale.getId());
+        int at = Collections.binarySearch(sales, sale, NEWEST_FIRST);
+        at = at < 0 ? -at - 1 : at;
+        // older than every sale held while older ones exist that are not: it belongs among those
+        if (at == sales.size() && !current.complete()) return current;
+        sales.add(at, sale);
+        boolean complete = current.complete();
+        if (sales.size() > capacity) {
+            sales.removeLast();
+            complete = false;
+        }
+        return new Snapshot(List.copyOf(sales), complete, false);
+    }
+
+    private Snapshot updated(Snapshot current, SalesDto.ViewSalesDto sale) {
+        if (current.stale()) return Snapshot.unloaded();
+        boolean held = current.sales().stream().anyMatch(other -> other.getId().equals(sale.getId()));
+        return held ? recorded(current, sale) : current;
+    }
+
+    private Snapshot removed(Snapshot current, Object id) {
+        if (current.stale()) return Snapshot.unloaded();
+        return new Snapshot(List.copyOf(without(current.sales(), id)), current.complete(), false);
+    }
+
+    private static List<SalesDto.ViewSalesDto> without(List<SalesDto.ViewSalesDto> sales, Object id) {
+        List<SalesDto.ViewSalesDto> left = new ArrayList<>(sales.size() + 1);
+        for (SalesDto.ViewSalesDto sale : sales) {
+            if (!sale.getId().equals(id)) left.add(sale);
+        }
+        return left;
+    }
+
+    private void apply(UnaryOperator<Snapshot> change) {
+        PendingChanges pending = pendingForWrite();
+        if (pending == null) {
+            snapshot.updateAndGet(change);
+            return;
+        }
+        pending.changes.add(change);
+    }
+
+    private PendingChanges ownChanges() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return null;
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            // push sales changes made earlier in this transaction through the listener
+            entityManager.flush();
+        }
+        return findPending();
+    }
+
+    private PendingChanges pendingForWrite() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return null;
+        PendingChanges pending = findPending();
+        if (pending == null) {
+            pending = new PendingChanges();
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        return pending;
+    }
+
+    private PendingChanges findPending() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingChanges pending && pending.owner() == this) {
+                return pending;
+            }
+        }
+        return null;
+    }
+
+    // stale: not loaded yet, or out of date; complete: no older sales exist than the ones held
+    private record Snapshot(List<SalesDto.ViewSalesDto> sales, boolean complete, boolean stale) {
+
+        // always a new instance, so a load that started before it cannot replace it
+        static Snapshot unloaded() {
+            return new Snapshot(List.of(), false, true);
+        }
+    }
+
+    private class PendingChanges implements TransactionSynchronization {
+        private final List<UnaryOperator<Snapshot>> changes = new ArrayList<>();
+
+        RecentSales owner() {
+            return RecentSales.this;
+        }
+
+        @Override
+        public void afterCommit() {
+            changes.forEach(snapshot::updateAndGet);
+        }
+    }
+
+    private class SalesChangeListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            if (!(event.getEntity() instanceof Sales sale)) return;
+            var view = SalesMapper.map(sale);
+            apply(current -> recorded(current, view));
+        }
+
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            if (!(event.getEntity() instanceof Sales sale)) return;
+            var view = SalesMapper.map(sale);
+            apply(current -> updated(current, view));
+        }
+
+        @Override
+        public void onPostDelete(PostDeleteEvent event) {
+            if (!(event.getEntity() instanceof Sales)) return;
+            Object id = event.getId();
+            apply(current -> removed(current, id));
+        }
+
+        @Override
+        public boolean requiresPostCommitHandling(EntityPersister persister) {
+            return false;
+        }
+    }
+}
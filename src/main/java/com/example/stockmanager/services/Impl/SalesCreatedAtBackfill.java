@@ -0,0 +1,28 @@
+package com.example.stockmanager.services.Impl;
+
+import com.example.stockmanager.repositories.SalesRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+// fills sales.created_at for rows recorded before the column existed, ahead of RecentSales loading from it
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SalesCreatedAtBackfill {
+
+    private final SalesRepository salesRepository;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @Transactional
+    public void backfill() {
+        int rows = salesRepository.backfillCreatedAt();
+        if (rows > 0) log.info("Backfilled sales creation times for {} rows", rows);
+    }
+}
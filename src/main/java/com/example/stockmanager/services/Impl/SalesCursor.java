@@ -0,0 +1,33 @@
+package com.example.stockmanager.services.Impl;
+
+import com.example.stockmanager.dtos.SalesDto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+// position after the last sale of a page, handed to clients as an opaque token
+record SalesCursor(LocalDate date, UUID id) {
+
+    static SalesCursor after(SalesDto.ViewSalesDto sale) {
+        return new SalesCursor(sale.getDate(), sale.getId());
+    }
+
+    // a blank token means the first page
+    static SalesCursor decode(String token) {
+        if (token == null || token.isBlank()) return null;
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|", 2);
+            return new SalesCursor(LocalDate.parse(parts[0]), UUID.fromString(parts[1]));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor, start again without one.");
+        }
+    }
+
+    String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((date + "|" + id).getBytes(StandardCharsets.UTF_8));
+    }
+}
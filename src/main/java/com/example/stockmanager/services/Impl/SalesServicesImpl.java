@@ -1,9 +1,13 @@
 package com.example.stockmanager.services.Impl;
 
+import com.example.stockmanager.dtos.CursorPageDto;
 import com.example.stockmanager.dtos.PageDto;
 import com.example.stockmanager.dtos.SalesDto.SalesDateDto;
 import com.example.stockmanager.dtos.SalesDto;
+import com.example.stockmanager.dtos.SliceDto;
+import com.example.stockmanager.dtos.StockDto;
 import com.example.stockmanager.entities.Stock;
+import com.example.stockmanager.events.SaleEvent;
 import com.example.stockmanager.exceptions.InsufficientStockException;
 import com.example.stockmanager.mappers.SalesMapper;
 import com.example.stockmanager.repositories.SalesRepository;
@@ -11,54 +15,110 @@ import com.example.stockmanager.repositories.StockRepository;
 import com.example.stockmanager.services.SalesServices;
 import lombok.RequiredArgsConstructor;
 import org.apache.kafka.common.errors.ResourceNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
 
 @Service
 @RequiredArgsConstructor
+@Transactional(readOnly = true)
 public class SalesServicesImpl implements SalesServices {
 
     private final StockRepository stockRepository;
     private final SalesRepository salesRepository;
     private final PageServiceImpl pageService;
+    private final StockTotalsTracker stockTotals;
+    private final TableStatistics tableStatistics;
+    private final DomainEvents domainEvents;
+    private final ArticleIndex articleIndex;
+    private final RecentSales recentSales;
+
+    @Value("${sales.batch.max-lines:100}")
+    private int maxBatchLines;
+
     @Override
+    @Transactional
     public SalesDto.ViewSalesDto addSales(SalesDto.AddSalesDto salesDto) {
 
         var sales = SalesMapper.map(salesDto);
-        var presentProduct = stockRepository.findByProductNameAndWeightAndContainerName(
-                sales.getName(), sales.getWeight(), sales.getContainerName()
-        );
-        if (presentProduct.isEmpty()) {
-            throw new ResourceNotFoundException("You don't have such product in stock");
-        }
-        var existingStock = presentProduct.get();
-        if (existingStock.getQuantity() < sales.getQuantity()) {
+        var lookupKey = Stock.lookupKey(sales.getName(), sales.getWeight(), sales.getContainerName());
+        // a single guarded UPDATE, so two tills selling the same item can never oversell it
+        int updated = stockRepository.decrementQuantity(lookupKey, sales.getQuantity());
+        if (updated == 0) {
+            if (stockRepository.findByLookupKey(lookupKey).isEmpty()) {
+                throw new ResourceNotFoundException("You don't have such product in stock");
+            }
             throw new InsufficientStockException("Not enough items in stock");
         }
-        salesRepository.save(sales);
-
-        // update stock
-        var newStockQuantity = existingStock.getQuantity() - sales.getQuantity();
-        if (newStockQuantity == 0) {
-            stockRepository.delete(existingStock);
+        stockTotals.record(sales.getWeight(), -sales.getQuantity());
+        if (stockRepository.deleteIfDepleted(lookupKey) > 0) {
+            articleIndex.removed(lookupKey);
         } else {
-            existingStock.setQuantity(newStockQuantity);
-            stockRepository.save(existingStock);
+            articleIndex.changed(lookupKey, -sales.getQuantity());
         }
+        salesRepository.save(sales);
+        domainEvents.saleChanged(SaleEvent.RECORDED, sales);
         return SalesMapper.map(sales);
     }
 
+    @Override
+    @Transactional
+    public List<SalesDto.ViewSalesDto> addSalesBatch(SalesDto.AddSalesBatchDto batch) {
+        var lines = batch.getLines();
+        if (lines.size() > maxBatchLines) {
+            throw new IllegalArgumentException("A receipt can have at most " + maxBatchLines + " lines.");
+        }
+        var sales = lines.stream().map(SalesMapper::map).toList();
+
+        // one guarded UPDATE per stock line, taken in lookup key order: receipts sharing items lock their rows in
+        // the same order and cannot deadlock each other
+        Map<String, List<Integer>> linesByKey = new TreeMap<>();
+        for (int i = 0; i < sales.size(); i++) {
+            var sale = sales.get(i);
+            linesByKey.computeIfAbsent(Stock.lookupKey(sale.getName(), sale.getWeight(), sale.getContainerName()),
+                    key -> new ArrayList<>()).add(i);
+        }
+        List<SalesDto.SaleLineErrorDto> errors = new ArrayList<>();
+        for (var entry : linesByKey.entrySet()) {
+            String lookupKey = entry.getKey();
+            int quantity = entry.getValue().stream().mapToInt(i -> sales.get(i).getQuantity()).sum();
+            if (stockRepository.decrementQuantity(lookupKey, quantity) == 0) {
+                var stock = stockRepository.findByLookupKey(lookupKey);
+                for (int i : entry.getValue()) {
+                    errors.add(new SalesDto.SaleLineErrorDto(i, sales.get(i).getName(), sales.get(i).getQuantity(),
+                            stock.map(Stock::getQuantity).orElse(0),
+                            stock.isEmpty() ? "You don't have such product in stock" : "Not enough items in stock"));
+                }
+                continue;
+            }
+            stockTotals.record(sales.get(entry.getValue().getFirst()).getWeight(), -quantity);
+            if (stockRepository.deleteIfDepleted(lookupKey) > 0) {
+                articleIndex.removed(lookupKey);
+            } else {
+                articleIndex.changed(lookupKey, -quantity);
+            }
+        }
+        if (!errors.isEmpty()) {
+            errors.sort(Comparator.comparingInt(SalesDto.SaleLineErrorDto::getIndex));
+            throw new InsufficientStockException("Not enough items in stock for " + errors.size() + " of " + sales.size() + " lines, nothing was sold", errors);
+        }
+
+        salesRepository.insertAll(sales);
+        sales.forEach(sale -> domainEvents.saleChanged(SaleEvent.RECORDED, sale));
+        return sales.stream().map(SalesMapper::map).toList();
+    }
+
+    // served from memory, see RecentSales
     @Override
     public List<SalesDto.ViewSalesDto> recentSales() {
-        var sales = salesRepository.getRecentSales();
+        var sales = recentSales.latest();
         if (sales.isEmpty()) throw new ResourceNotFoundException("No sales data available");
-        return sales.stream()
-                .map(SalesMapper::map)
-                .toList();
+        return sales;
     }
 
     @Override
@@ -66,11 +126,65 @@ public class SalesServicesImpl implements SalesServices {
         var pageable = pageService.getPageable(pageDto);
         var sales = salesRepository.getSales(pageable);
         if (sales.isEmpty()) throw new ResourceNotFoundException("No sales data available.");
-        return sales.map(SalesMapper::map);
+        return sales;
     }
 
     @Override
     public Page<SalesDto.ViewSalesDto> viewSalesFiltered(SalesDateDto dateDto) {
+        validateDateFilter(dateDto);
+
+        var pageable = pageService.getPageable(dateDto.toPageDto());
+        var sales = salesRepository.findByDateRange(pageable, dateDto.getStartDate(), dateDto.getEndDate());
+        if (sales.isEmpty()) throw new ResourceNotFoundException("No sales data available for the provided filters.");
+        return sales;
+    }
+
+    @Override
+    public SliceDto<SalesDto.ViewSalesDto> viewSalesSlice(PageDto pageDto) {
+        var pageable = pageService.getPageable(pageDto);
+        var sales = salesRepository.sliceSales(pageable);
+        if (sales.isEmpty()) throw new ResourceNotFoundException("No sales data available.");
+        return pageService.toSliceDto(sales, tableStatistics.estimatedRowCount("sales"));
+    }
+
+    @Override
+    public SliceDto<SalesDto.ViewSalesDto> viewSalesFilteredSlice(SalesDateDto dateDto) {
+        validateDateFilter(dateDto);
+
+        var pageable = pageService.getPageable(dateDto.toPageDto());
+        var sales = salesRepository.sliceByDateRange(pageable, dateDto.getStartDate(), dateDto.getEndDate());
+        if (sales.isEmpty()) throw new ResourceNotFoundException("No sales data available for the provided filters.");
+        return pageService.toSliceDto(sales, null);
+    }
+
+    @Override
+    public CursorPageDto<SalesDto.ViewSalesDto> viewSalesByCursor(String cursor, Integer size) {
+        int pageSize = pageService.getSize(size);
+        var after = SalesCursor.decode(cursor);
+        // one extra row tells whether there is a next page without counting
+        var limit = Limit.of(pageSize + 1);
+        var sales = after == null
+                ? salesRepository.getSalesFirst(limit)
+                : salesRepository.getSalesAfter(after.date(), after.id(), limit);
+        if (sales.isEmpty() && after == null) throw new ResourceNotFoundException("No sales data available.");
+        return toCursorPage(sales, pageSize);
+    }
+
+    @Override
+    public CursorPageDto<SalesDto.ViewSalesDto> viewSalesFilteredByCursor(SalesDateDto dateDto, String cursor) {
+        validateDateFilter(dateDto);
+
+        int pageSize = pageService.getSize(dateDto.getSize());
+        var after = SalesCursor.decode(cursor);
+        var limit = Limit.of(pageSize + 1);
+        var sales = after == null
+                ? salesRepository.findFirstByDateRange(dateDto.getStartDate(), dateDto.getEndDate(), limit)
+                : salesRepository.findByDateRangeAfter(dateDto.getStartDate(), dateDto.getEndDate(), after.date(), after.id(), limit);
+        if (sales.isEmpty() && after == null) throw new ResourceNotFoundException("No sales data available for the provided filters.");
+        return toCursorPage(sales, pageSize);
+    }
+
+    private void validateDateFilter(SalesDateDto dateDto) {
         if (dateDto == null) {
             throw new IllegalArgumentException("Filter payload cannot be null.");
         }
@@ -78,22 +192,32 @@ public class SalesServicesImpl implements SalesServices {
                 dateDto.getEndDate().isBefore(dateDto.getStartDate())) {
             throw new IllegalArgumentException("End date cannot be before start date.");
         }
+    }
 
-        var pageable = pageService.getPageable(dateDto.toPageDto());
-        var sales = salesRepository.findByDateRange(pageable, dateDto.getStartDate(), dateDto.getEndDate());
-        if (sales.isEmpty()) throw new ResourceNotFoundException("No sales data available for the provided filters.");
-        return sales.map(SalesMapper::map);
+    private CursorPageDto<SalesDto.ViewSalesDto> toCursorPage(List<SalesDto.ViewSalesDto> sales, int pageSize) {
+        boolean hasNext = sales.size() > pageSize;
+        var content = hasNext ? sales.subList(0, pageSize) : sales;
+        String nextCursor = hasNext ? SalesCursor.after(content.getLast()).encode() : null;
+        return new CursorPageDto<>(content, content.size(), nextCursor, hasNext);
     }
 
     @Override
     public String getItemName(String articleCode) {
-        var name = stockRepository.getArticleName(articleCode);
-        if (name.isEmpty()) throw new ResourceNotFoundException("You don't have such product in stock");
-        if (name.size() > 1) throw new DuplicateKeyException("There's more than one product with this code in store, please enter the code manually");
-        return name.getFirst();
+        var matches = articleIndex.findByCode(articleCode);
+        if (matches.isEmpty()) throw new ResourceNotFoundException("You don't have such product in stock");
+        if (matches.size() > 1) throw new DuplicateKeyException("There's more than one product with this code in store, please enter the code manually");
+        return matches.getFirst().getItem_name();
+    }
+
+    @Override
+    public List<StockDto.ViewStockDto> findArticles(String code, String name) {
+        if (code != null && !code.isBlank()) return articleIndex.findByCode(code);
+        if (name != null && !name.isBlank()) return articleIndex.findByName(name);
+        throw new IllegalArgumentException("Provide an article code or name.");
     }
 
     @Override
+    @Transactional
     public void deleteSales(UUID id) {
         if (id == null) {
             throw new IllegalArgumentException("Sale id cannot be null.");
@@ -101,16 +225,18 @@ public class SalesServicesImpl implements SalesServices {
         var sale = salesRepository.findSaleById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Sale not found"));
 
-        var stock = stockRepository.findByProductNameAndWeightAndContainerName(
-                sale.getName(), sale.getWeight(), sale.getContainerName()
+        var stock = stockRepository.findByLookupKey(
+                Stock.lookupKey(sale.getName(), sale.getWeight(), sale.getContainerName())
         ).orElseThrow(() -> new ResourceNotFoundException("Matching stock entry not found for sale restoration"));
 
         stock.setQuantity(stock.getQuantity() + sale.getQuantity());
         stockRepository.save(stock);
         salesRepository.delete(sale);
+        domainEvents.saleChanged(SaleEvent.DELETED, sale);
     }
 
     @Override
+    @Transactional
     public SalesDto.ViewSalesDto updateSale(UUID id, SalesDto.UpdateSalesDto updateDto) {
         if (id == null) {
             throw new IllegalArgumentException("Sale id cannot be null.");
@@ -137,8 +263,8 @@ public class SalesServicesImpl implements SalesServices {
 
         int quantityDiff = newQuantity - currentQuantity;
         if (quantityDiff != 0) {
-            var optionalStock = stockRepository.findByProductNameAndWeightAndContainerName(
-                    sale.getName(), sale.getWeight(), sale.getContainerName()
+            var optionalStock = stockRepository.findByLookupKey(
+                    Stock.lookupKey(sale.getName(), sale.getWeight(), sale.getContainerName())
             );
 
             if (quantityDiff > 0) {
@@ -176,6 +302,7 @@ public class SalesServicesImpl implements SalesServices {
         sale.setPrice(newPrice);
         sale.setTotalPrice(newQuantity * newPrice);
         var updatedSale = salesRepository.save(sale);
+        domainEvents.saleChanged(SaleEvent.UPDATED, updatedSale);
 
         return SalesMapper.map(updatedSale);
     }
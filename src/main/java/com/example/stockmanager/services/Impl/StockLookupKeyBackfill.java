@@ -0,0 +1,52 @@
+package com.example.stockmanager.services.Impl;
+
+import com.example.stockmanager.entities.Stock;
+import com.example.stockmanager.repositories.StockRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// fills stock.lookup_key for rows created before the column existed, merging rows that collide on the key
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StockLookupKeyBackfill {
+
+    private final StockRepository stockRepository;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfill() {
+        var rows = stockRepository.findWithoutLookupKey();
+        if (rows.isEmpty()) return;
+
+        Map<String, Stock> kept = new LinkedHashMap<>();
+        int merged = 0;
+        for (Stock stock : rows) {
+            String key = Stock.lookupKey(stock.getName(), stock.getWeight(), stock.getContainer_name());
+            Stock existing = kept.get(key);
+            if (existing == null) {
+                existing = stockRepository.findByLookupKey(key).orElse(null);
+            }
+            if (existing == null) {
+                stock.refreshLookupKey();
+                kept.put(key, stock);
+                continue;
+            }
+            existing.setQuantity(existing.getQuantity() + stock.getQuantity());
+            if ((existing.getCode() == null || existing.getCode().isBlank()) && stock.getCode() != null) {
+                existing.setCode(stock.getCode());
+            }
+            kept.put(key, existing);
+            stockRepository.delete(stock);
+            merged++;
+        }
+        log.info("Backfilled stock lookup keys for {} rows, merged {} duplicates", rows.size(), merged);
+    }
+}
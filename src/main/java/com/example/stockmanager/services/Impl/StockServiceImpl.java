@@ -1,73 +1,107 @@
 package com.example.stockmanager.services.Impl;
 
 import com.example.stockmanager.dtos.PageDto;
+import com.example.stockmanager.dtos.SliceDto;
 import com.example.stockmanager.dtos.StockDto;
 import com.example.stockmanager.entities.Stock;
 import com.example.stockmanager.entities.ContainerWeights;
+import com.example.stockmanager.events.StockEvent;
 import com.example.stockmanager.mappers.StockMapper;
 import com.example.stockmanager.repositories.StockRepository;
+import com.example.stockmanager.services.StockImportProgress;
 import com.example.stockmanager.services.StockServices;
 import lombok.RequiredArgsConstructor;
 import org.apache.kafka.common.errors.ResourceNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 
 @Service
 @RequiredArgsConstructor
+@Transactional(readOnly = true)
 public class StockServiceImpl implements StockServices {
 
+    private static final int UPLOAD_CHUNK_SIZE = 500;
+
     private final StockRepository stockRepository;
     private final PageServiceImpl pageService;
+    private final StockTotalsTracker stockTotals;
+    private final TableStatistics tableStatistics;
+    private final DomainEvents domainEvents;
+    private final ArticleIndex articleIndex;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${stock.search.default-limit:20}")
+    private int defaultSearchLimit;
+
+    @Value("${stock.search.max-limit:100}")
+    private int maxSearchLimit;
+
+    // served from the running counters, see StockTotalsTracker
     @Override
     public Integer getTotalStock() {
-        var stock = stockRepository.getTotalStock();
-        if (stock == null) return 0;
-        return stock;
+        return Math.toIntExact(stockTotals.total());
     }
 
     @Override
     public Integer get75Stock() {
-        var stock = stockRepository.get75KGTotalStock();
-        if (stock == null) return 0;
-        return stock;
+        return Math.toIntExact(stockTotals.total(ContainerWeights.KG_75));
     }
 
     @Override
     public Integer get45Stock() {
-        var stock = stockRepository.get45KGTotalStock();
-        if (stock == null) return 0;
-        return stock;
+        return Math.toIntExact(stockTotals.total(ContainerWeights.KG_45));
     }
 
     @Override
     public Integer getBagStock() {
-        var stock = stockRepository.getBagTotalStock();
-        if (stock == null) return 0;
-        return stock;
+        return Math.toIntExact(stockTotals.total(ContainerWeights.BAGS));
     }
 
+    // joins the caller's transaction if there is one, otherwise each attempt runs in a transaction of its own
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public StockDto.ViewStockDto addStock(StockDto.AddStockDto stockDto, ContainerWeights weight) {
+        try {
+            return transactionTemplate.execute(status -> addOrInsertStock(stockDto, weight));
+        } catch (DataIntegrityViolationException e) {
+            // a caller's transaction cannot go on after the failed insert
+            if (TransactionSynchronizationManager.isActualTransactionActive()) throw e;
+            // another first restock of the same line inserted it meanwhile, this attempt adds to that row
+            return transactionTemplate.execute(status -> addOrInsertStock(stockDto, weight));
+        }
+    }
+
+    private StockDto.ViewStockDto addOrInsertStock(StockDto.AddStockDto stockDto, ContainerWeights weight) {
         var stock = StockMapper.map(stockDto);
-        var presentProduct = stockRepository.findByProductNameAndWeightAndContainerName(
-                stock.getName(), weight, stock.getContainer_name()
-        );
-
-        if (presentProduct.isPresent()) {
-            Stock existing = presentProduct.get();
-            existing.setQuantity(existing.getQuantity() + stock.getQuantity());
-            Stock updated = stockRepository.save(existing);
+        var lookupKey = Stock.lookupKey(stock.getName(), weight, stock.getContainer_name());
+
+        // increment in place so concurrent restocks of the same item are never lost
+        if (stockRepository.incrementQuantity(lookupKey, stock.getQuantity()) > 0) {
+            stockTotals.record(weight, stock.getQuantity());
+            articleIndex.changed(lookupKey, stock.getQuantity());
+            var updated = stockRepository.findByLookupKey(lookupKey).orElseThrow();
+            domainEvents.stockChanged(StockEvent.ADDED, updated, stock.getQuantity(), updated.getQuantity());
             return StockMapper.map(updated);
-        } else {
-            stock.setWeight(weight);
-            Stock saved = stockRepository.save(stock);
-            return StockMapper.map(saved);
         }
+        stock.setWeight(weight);
+        // flushed here, so losing the race on the lookup key surfaces inside this attempt
+        Stock saved = stockRepository.saveAndFlush(stock);
+        domainEvents.stockChanged(StockEvent.ADDED, saved, saved.getQuantity(), saved.getQuantity());
+        return StockMapper.map(saved);
     }
 
     @Override
@@ -77,7 +111,7 @@ public class StockServiceImpl implements StockServices {
         boolean hasWeight = (weight != null);
         boolean hasContainer = (containerName != null);
 
-        Page<Stock> stock;
+        Page<StockDto.ViewStockDto> stock;
 
         if (hasWeight && hasContainer) {
             stock = stockRepository.findByWeightAndContainerName(pageable, weight, containerName);
@@ -89,7 +123,43 @@ public class StockServiceImpl implements StockServices {
             stock = stockRepository.getAllStock(pageable);
         }
         if (stock.isEmpty()) throw new ResourceNotFoundException("Stock with selected criteria not found");
-        return stock.map(StockMapper::map);
+        return stock;
+    }
+
+    @Override
+    public SliceDto<StockDto.ViewStockDto> viewStockFilterSlice(PageDto pageDto, ContainerWeights weight, String containerName) {
+
+        Pageable pageable = pageService.getPageable(pageDto);
+        boolean hasWeight = (weight != null);
+        boolean hasContainer = (containerName != null);
+
+        Slice<StockDto.ViewStockDto> stock;
+
+        if (hasWeight && hasContainer) {
+            stock = stockRepository.sliceByWeightAndContainerName(pageable, weight, containerName);
+        } else if (hasWeight) {
+            stock = stockRepository.sliceByWeight(pageable, weight);
+        } else if (hasContainer) {
+            stock = stockRepository.sliceByContainerName(pageable, containerName);
+        } else {
+            stock = stockRepository.sliceAllStock(pageable);
+        }
+        if (stock.isEmpty()) throw new ResourceNotFoundException("Stock with selected criteria not found");
+        // the planner estimate is for the whole table, so only offer it for the unfiltered listing
+        Long estimate = hasWeight || hasContainer ? null : tableStatistics.estimatedRowCount("stock");
+        return pageService.toSliceDto(stock, estimate);
+    }
+
+    // answered from the article index, see ArticleSearchIndex
+    @Override
+    public List<StockDto.ViewStockDto> search(String query, Integer limit) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Provide something to search for.");
+        }
+        if (limit != null && limit < 1) {
+            throw new IllegalArgumentException("Limit must be at least 1.");
+        }
+        return articleIndex.search(query, limit == null ? defaultSearchLimit : Math.min(limit, maxSearchLimit));
     }
 
     @Override
@@ -98,27 +168,60 @@ public class StockServiceImpl implements StockServices {
     }
 
     @Override
+    @Transactional
     public int uploadStockFile(MultipartFile file) {
         if (!ExcelUploadService.isValidExcelFile(file)) {
             throw new IllegalArgumentException("Please upload a .xlsx file that matches the Stock template.");
         }
 
-        final List<Stock> parsedRows;
+        Path spooled = null;
         try {
-            parsedRows = ExcelUploadService.getStockDataFromExcel(file.getInputStream());
+            // spool to disk so POI can stream the sheet instead of holding the whole workbook in memory
+            spooled = Files.createTempFile("stock-upload-", ".xlsx");
+            file.transferTo(spooled);
+            // the chunks join this transaction, so an upload is applied completely or not at all
+            return importChunks(spooled, StockImportProgress.NONE);
         } catch (IOException e) {
             throw new IllegalArgumentException("Could not read the uploaded file. Please try again.", e);
+        } finally {
+            deleteQuietly(spooled);
         }
+    }
+
+    // every chunk commits on its own, so a long import only holds the locks of the chunk being written;
+    // the rows reported as applied are committed, even if a later chunk fails
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int importStockFile(Path file, StockImportProgress progress) {
+        return importChunks(file, progress);
+    }
 
-        if (parsedRows.isEmpty()) {
+    private int importChunks(Path file, StockImportProgress progress) {
+        Set<String> distinctKeys = new HashSet<>();
+        int parsedRows;
+        try {
+            parsedRows = ExcelUploadService.readStockData(file.toFile(), UPLOAD_CHUNK_SIZE, chunk -> {
+                progress.rowsParsed(chunk.size());
+                distinctKeys.addAll(Objects.requireNonNull(transactionTemplate.execute(status -> applyStockChunk(chunk))));
+                progress.rowsApplied(chunk.size());
+            });
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not read the uploaded file. Please try again.", e);
+        }
+
+        if (parsedRows == 0) {
             throw new IllegalArgumentException("The uploaded file does not contain any stock rows.");
         }
+        transactionTemplate.executeWithoutResult(status -> domainEvents.stockImported(distinctKeys.size()));
+        return distinctKeys.size();
+    }
 
+    // merges duplicate rows of one chunk, then adds them to existing stock or inserts them
+    private Set<String> applyStockChunk(List<Stock> rows) {
+        articleIndex.changedAll();
         Map<String, Stock> aggregated = new LinkedHashMap<>();
-        for (Stock stock : parsedRows) {
-            String key = stock.getName().toLowerCase(Locale.ROOT) + "|" +
-                    stock.getWeight().name() + "|" +
-                    stock.getContainer_name().toLowerCase(Locale.ROOT);
+        for (Stock stock : rows) {
+            String key = Stock.lookupKey(stock.getName(), stock.getWeight(), stock.getContainer_name());
 
             aggregated.merge(key, stock, (existing, incoming) -> {
                 existing.setQuantity(existing.getQuantity() + incoming.getQuantity());
@@ -129,27 +232,31 @@ public class StockServiceImpl implements StockServices {
             });
         }
 
-        aggregated.values().forEach(newStock -> {
-            var existingStock = stockRepository.findByProductNameAndWeightAndContainerName(
-                    newStock.getName(), newStock.getWeight(), newStock.getContainer_name()
-            );
+        // one IN lookup for the whole chunk, then one batch of increments and one batch of inserts
+        var existingKeys = new HashSet<>(stockRepository.findExistingLookupKeys(aggregated.keySet()));
+        List<Stock> increments = new ArrayList<>();
+        List<Stock> inserts = new ArrayList<>();
+        aggregated.forEach((key, stock) -> (existingKeys.contains(key) ? increments : inserts).add(stock));
 
-            if (existingStock.isPresent()) {
-                Stock existing = existingStock.get();
-                existing.setQuantity(existing.getQuantity() + newStock.getQuantity());
-                if ((existing.getCode() == null || existing.getCode().isBlank()) && newStock.getCode() != null) {
-                    existing.setCode(newStock.getCode());
-                }
-                stockRepository.save(existing);
-            } else {
-                stockRepository.save(newStock);
-            }
-        });
+        stockRepository.addQuantities(increments);
+        increments.forEach(stock -> stockTotals.record(stock.getWeight(), stock.getQuantity()));
+        stockRepository.insertAll(inserts);
+        increments.forEach(stock -> domainEvents.stockAddedInBulk(stock, false));
+        inserts.forEach(stock -> domainEvents.stockAddedInBulk(stock, true));
+        return aggregated.keySet();
+    }
 
-        return aggregated.size();
+    static void deleteQuietly(Path path) {
+        if (path == null) return;
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // the temp directory is cleaned up by the OS eventually
+        }
     }
 
     @Override
+    @Transactional
     public StockDto.ViewStockDto updateStock(UUID id, StockDto.UpdateStockDto updateDto) {
         if (id == null) {
             throw new IllegalArgumentException("Stock id cannot be null.");
@@ -160,6 +267,7 @@ public class StockServiceImpl implements StockServices {
 
         var stock = stockRepository.findItemById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Stock item not found with id: " + id));
+        int previousQuantity = stock.getQuantity();
 
         // Update only fields that are provided (not null)
         if (updateDto.getItem_code() != null && !updateDto.getItem_code().isBlank()) {
@@ -181,14 +289,18 @@ public class StockServiceImpl implements StockServices {
             stock.setWeight(updateDto.getWeight());
         }
 
-        stockRepository.save(stock);
+        // flush now so a clash on the lookup key surfaces here rather than at commit
+        stockRepository.saveAndFlush(stock);
+        domainEvents.stockChanged(StockEvent.UPDATED, stock, stock.getQuantity() - previousQuantity, stock.getQuantity());
         return StockMapper.map(stock);
     }
 
     @Override
+    @Transactional
     public void deleteStock(UUID id) {
         var item = stockRepository.findItemById(id);
         if (item.isEmpty()) throw new ResourceNotFoundException("Item not found");
         stockRepository.deleteById(id);
+        domainEvents.stockChanged(StockEvent.DELETED, item.get(), -item.get().getQuantity(), 0);
     }
 }
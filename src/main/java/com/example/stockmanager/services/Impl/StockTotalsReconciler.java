@@ -0,0 +1,73 @@
+package com.example.stockmanager.services.Impl;
+
+import com.example.stockmanager.entities.ContainerWeights;
+import com.example.stockmanager.entities.StockTotal;
+import com.example.stockmanager.repositories.StockTotalRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+// seeds the stock_totals counters at startup and periodically compares them with the real SUM over the stock table
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StockTotalsReconciler {
+
+    private final StockTotalsTracker stockTotals;
+    private final StockTotalRepository stockTotalRepository;
+
+    // mirror drift seen on the previous run; a commit landing between our reads can look like drift once
+    private final Map<ContainerWeights, Long> suspectedMirrorDrift = new EnumMap<>(ContainerWeights.class);
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void seed() {
+        Map<ContainerWeights, Long> actual = stockTotals.sumFromStock();
+        for (ContainerWeights weight : ContainerWeights.values()) {
+            stockTotalRepository.save(new StockTotal(weight, actual.getOrDefault(weight, 0L)));
+        }
+        stockTotals.seed(actual);
+        log.info("Seeded stock totals {}", actual);
+    }
+
+    // one snapshot for the SUM and the counters, so a concurrent commit cannot show up as drift in the table
+    @Scheduled(fixedDelayString = "${stock.totals.reconcile-interval:PT10M}", initialDelayString = "${stock.totals.reconcile-interval:PT10M}")
+    @Transactional(isolation = Isolation.REPEATABLE_READ)
+    public synchronized void reconcile() {
+        Map<ContainerWeights, Long> actual = stockTotals.sumFromStock();
+        Map<ContainerWeights, Long> stored = new EnumMap<>(ContainerWeights.class);
+        stockTotalRepository.findAll().forEach(total -> stored.put(total.getWeight(), total.getQuantity()));
+        Map<ContainerWeights, Long> mirror = stockTotals.committedTotals();
+
+        for (ContainerWeights weight : ContainerWeights.values()) {
+            long expected = actual.getOrDefault(weight, 0L);
+
+            long tableDrift = expected - stored.getOrDefault(weight, 0L);
+            if (tableDrift != 0) {
+                log.warn("stock_totals drift for {}: counter {}, actual {}; correcting", weight, stored.get(weight), expected);
+                if (stockTotalRepository.adjust(weight, tableDrift) == 0) {
+                    stockTotalRepository.save(new StockTotal(weight, expected));
+                }
+            }
+
+            long mirrorDrift = expected - mirror.get(weight);
+            if (mirrorDrift == 0) {
+                suspectedMirrorDrift.remove(weight);
+            } else if (Long.valueOf(mirrorDrift).equals(suspectedMirrorDrift.get(weight))) {
+                log.warn("In-memory stock total drift for {}: counter {}, actual {}; correcting", weight, mirror.get(weight), expected);
+                stockTotals.correct(weight, mirrorDrift);
+                suspectedMirrorDrift.remove(weight);
+            } else {
+                suspectedMirrorDrift.put(weight, mirrorDrift);
+            }
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.example.stockmanager.services.Impl;
+
+import com.example.stockmanager.entities.ContainerWeights;
+import com.example.stockmanager.entities.Stock;
+import com.example.stockmanager.repositories.StockRepository;
+import com.example.stockmanager.repositories.StockTotalRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the per-weight stock totals as counters instead of summing the stock table on every read.
+ * <p>
+ * Entity inserts, updates and deletes of {@link Stock} are picked up from Hibernate's flush events;
+ * bulk statements that bypass the persistence context report their change through {@link #record}.
+ * Changes are collected per transaction, added to the {@code stock_totals} rows just before commit and
+ * to the in-memory mirror once the commit succeeded. Reads see the mirror plus the current
+ * transaction's own pending changes. Commits on other nodes reach the mirror through their TOTALS event on
+ * the live stream, which carries the changes it made.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StockTotalsTracker {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final StockRepository stockRepository;
+    private final StockTotalRepository stockTotalRepository;
+    private final ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final Map<ContainerWeights, AtomicLong> committed = new EnumMap<>(ContainerWeights.class);
+    private volatile boolean seeded;
+    private int quantityIndex;
+    private int weightIndex;
+
+    @PostConstruct
+    void registerListeners() {
+        for (ContainerWeights weight : ContainerWeights.values()) {
+            committed.put(weight, new AtomicLong());
+        }
+
+        var sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        List<String> properties = Arrays.asList(sessionFactory.getMappingMetamodel()
+                .getEntityDescriptor(Stock.class).getPropertyNames());
+        quantityIndex = properties.indexOf("quantity");
+        weightIndex = properties.indexOf("weight");
+
+        var listener = new StockChangeListener();
+        var registry = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_LOAD, listener);
+        registry.appendListeners(EventType.PERSIST, listener);
+        registry.appendListeners(EventType.MERGE, listener);
+        registry.appendListeners(EventType.POST_INSERT, listener);
+        registry.appendListeners(EventType.POST_UPDATE, listener);
+        registry.appendListeners(EventType.PRE_DELETE, listener);
+    }
+
+    public long total(ContainerWeights weight) {
+        if (!seeded) {
+            return sumFromStock().getOrDefault(weight, 0L);
+        }
+        return committed.get(weight).get() + pendingDelta(pendingForRead(), weight);
+    }
+
+    public long total() {
+        if (!seeded) {
+            return sumFromStock().values().stream().mapToLong(Long::longValue).sum();
+        }
+        PendingTotals pending = pendingForRead();
+        long total = 0;
+        for (ContainerWeights weight : ContainerWeights.values()) {
+            total += committed.get(weight).get() + pendingDelta(pending, weight);
+        }
+        return total;
+    }
+
+    // for statements that change stock quantities without going through the persistence context
+    public void record(ContainerWeights weight, long delta) {
+        if (weight == null || delta == 0) return;
+        PendingTotals pending = pendingForWrite();
+        if (pending == null) {
+            committed.get(weight).addAndGet(delta);
+            return;
+        }
+        pending.deltas.merge(weight, delta, Long::sum);
+    }
+
+    // the current transaction's own changes per weight, as announced to the other nodes when it commits
+    Map<ContainerWeights, Long> pendingChanges() {
+        PendingTotals pending = pendingForRead();
+        return pending == null ? Map.of() : new EnumMap<>(pending.deltas);
+    }
+
+    // a commit on another node, as announced on the live stream
+    void changed(LiveEvent event) {
+        if (!event.type().equals("TOTALS")) return;
+        try {
+            JsonNode changed = objectMapper.readTree(event.data()).get("changed");
+            if (changed == null) return;
+            for (Map.Entry<String, JsonNode> change : changed.properties()) {
+                committed.get(ContainerWeights.valueOf(change.getKey())).addAndGet(change.getValue().asLong());
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Could not apply stock totals changed on another node, the totals reconciliation will pick them up", e);
+        }
+    }
+
+    Map<ContainerWeights, Long> committedTotals() {
+        Map<ContainerWeights, Long> totals = new EnumMap<>(ContainerWeights.class);
+        committed.forEach((weight, value) -> totals.put(weight, value.get()));
+        return totals;
+    }
+
+    void seed(Map<ContainerWeights, Long> totals) {
+        committed.forEach((weight, value) -> value.set(totals.getOrDefault(weight, 0L)));
+        seeded = true;
+    }
+
+    void correct(ContainerWeights weight, long drift) {
+        committed.get(weight).addAndGet(drift);
+    }
+
+    Map<ContainerWeights, Long> sumFromStock() {
+        Map<ContainerWeights, Long> totals = new EnumMap<>(ContainerWeights.class);
+        for (Object[] row : stockRepository.sumQuantityByWeight()) {
+            if (row[0] != null && row[1] != null) {
+                totals.put((ContainerWeights) row[0], ((Number) row[1]).longValue());
+            }
+        }
+        return totals;
+    }
+
+    private PendingTotals pendingForRead() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return null;
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            // read your own writes: push entity changes made earlier in this transaction through the listener
+            entityManager.flush();
+        }
+        return findPending();
+    }
+
+    private PendingTotals pendingForWrite() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return null;
+        PendingTotals pending = findPending();
+        if (pending == null) {
+            pending = new PendingTotals();
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        return pending;
+    }
+
+    // looked up among the synchronizations rather than bound as a resource, so REQUIRES_NEW gets its own
+    private PendingTotals findPending() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingTotals pending && pending.owner() == this) {
+                return pending;
+            }
+        }
+        return null;
+    }
+
+    private static long pendingDelta(PendingTotals pending, ContainerWeights weight) {
+        return pending == null ? 0 : pending.deltas.getOrDefault(weight, 0L);
+    }
+
+    private class PendingTotals implements TransactionSynchronization {
+        private final Map<ContainerWeights, Long> deltas = new EnumMap<>(ContainerWeights.class);
+
+        StockTotalsTracker owner() {
+            return StockTotalsTracker.this;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            if (readOnly) return;
+            // flush first so entity changes still queued in the session are counted before the rows are written
+            entityManager.flush();
+            deltas.forEach((weight, delta) -> {
+                if (delta != 0) stockTotalRepository.adjust(weight, delta);
+            });
+        }
+
+        @Override
+        public void afterCommit() {
+            deltas.forEach((weight, delta) -> committed.get(weight).addAndGet(delta));
+        }
+    }
+
+    // Stock changes are only seen at flush time, which may be the commit's own flush after beforeCommit has run.
+    // Joining the transaction as soon as a Stock is loaded, persisted or merged makes sure they still get written.
+    private void enlist() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            pendingForWrite();
+        }
+    }
+
+    private class StockChangeListener implements PostLoadEventListener, PersistEventListener, MergeEventListener,
+            PostInsertEventListener, PostUpdateEventListener, PreDeleteEventListener {
+
+        @Override
+        public void onPostLoad(PostLoadEvent event) {
+            if (event.getEntity() instanceof Stock) enlist();
+        }
+
+        @Override
+        public void onPersist(PersistEvent event) {
+            if (event.getObject() instanceof Stock) enlist();
+        }
+
+        @Override
+        public void onPersist(PersistEvent event, PersistContext createdAlready) {
+            onPersist(event);
+        }
+
+        @Override
+        public void onMerge(MergeEvent event) {
+            if (event.getOriginal() instanceof Stock) enlist();
+        }
+
+        @Override
+        public void onMerge(MergeEvent event, MergeContext copiedAlready) {
+            onMerge(event);
+        }
+
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            if (event.getEntity() instanceof Stock stock) {
+                record(stock.getWeight(), quantity(stock.getQuantity()));
+            }
+        }
+
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            if (!(event.getEntity() instanceof Stock stock)) return;
+            Object[] oldState = event.getOldState();
+            if (oldState == null) {
+                log.debug("No loaded state for stock {}, the totals reconciliation will pick up the change", stock.getId());
+                return;
+            }
+            record((ContainerWeights) oldState[weightIndex], -quantity(oldState[quantityIndex]));
+            record(stock.getWeight(), quantity(stock.getQuantity()));
+        }
+
+        @Override
+        public boolean onPreDelete(PreDeleteEvent event) {
+            if (event.getEntity() instanceof Stock) {
+                // the loaded state is what the row holds, even if the entity was changed before being removed
+                EntityEntry entry = event.getSession().getPersistenceContextInternal().getEntry(event.getEntity());
+                Object[] state = entry != null && entry.getLoadedState() != null ? entry.getLoadedState() : event.getDeletedState();
+                record((ContainerWeights) state[weightIndex], -quantity(state[quantityIndex]));
+            }
+            return false;
+        }
+
+        @Override
+        public boolean requiresPostCommitHandling(EntityPersister persister) {
+            return false;
+        }
+
+        private long quantity(Object value) {
+            return value == null ? 0 : ((Number) value).longValue();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.stockmanager.services.Impl;
+
+import com.example.stockmanager.configurations.StockCache;
+import com.example.stockmanager.exceptions.ServiceBusyException;
+import com.example.stockmanager.services.StreamServices;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans committed stock and sales changes out to the open {@code /api/v1/stream} connections.
+ * <p>
+ * Every connection gets its own bounded buffer drained by a virtual thread, so one slow terminal never
+ * holds up the others: when its buffer is full it is disconnected and is expected to reconnect and reload.
+ * On PostgreSQL, changes travel through {@code NOTIFY} and every node, this one included, delivers what it
+ * hears on its {@code LISTEN} connection, which it opens for itself rather than taking one from the pool for
+ * good; elsewhere they are delivered locally after commit.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StreamServiceImpl implements StreamServices {
+
+    static final String CHANNEL = "stock_manager_live";
+    // sent with every notification, so a node can tell its own transactions from the others'
+    static final String NODE_ID = UUID.randomUUID().toString();
+
+    // sent through the buffer to stop the drain thread
+    private static final LiveEvent CLOSE = new LiveEvent("", "");
+    private static final LiveEvent HEARTBEAT = new LiveEvent("", "");
+
+    private final TableStatistics tableStatistics;
+    private final ObjectMapper objectMapper;
+    private final DataVersionServiceImpl dataVersions;
+    private final StockCache stockCache;
+    private final ArticleIndex articleIndex;
+    private final RecentSales recentSales;
+    private final StockTotalsTracker stockTotals;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    // counted before a subscriber is added, so concurrent subscribes cannot overshoot the limit together
+    private final AtomicInteger open = new AtomicInteger();
+
+    @Value("${spring.datasource.url}")
+    private String url;
+
+    @Value("${spring.datasource.username:}")
+    private String username;
+
+    @Value("${spring.datasource.password:}")
+    private String password;
+
+    @Value("${stream.buffer-size:256}")
+    private int bufferSize;
+
+    @Value("${stream.max-connections:500}")
+    private int maxConnections;
+
+    @Value("${stream.timeout:PT30M}")
+    private Duration timeout;
+
+    private volatile boolean running = true;
+
+    @Override
+    public SseEmitter subscribe() {
+        if (open.incrementAndGet() > maxConnections) {
+            open.decrementAndGet();
+            throw new ServiceBusyException("Too many live connections are open, please try again later.");
+        }
+        Subscriber subscriber = new Subscriber(new SseEmitter(timeout.toMillis()), new ArrayBlockingQueue<>(bufferSize));
+        subscribers.add(subscriber);
+        subscriber.emitter.onCompletion(() -> close(subscriber));
+        subscriber.emitter.onTimeout(() -> close(subscriber));
+        subscriber.emitter.onError(error -> close(subscriber));
+        Thread.ofVirtual().name("sse-subscriber").start(() -> drain(subscriber));
+        return subscriber.emitter;
+    }
+
+    // hands an event to every open connection on this node
+    void deliver(LiveEvent event) {
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.buffer.offer(event)) {
+                log.info("Disconnecting a live stream that fell {} events behind", bufferSize);
+                close(subscriber);
+                subscriber.emitter.complete();
+            }
+        }
+    }
+
+    boolean notifiesThroughDatabase() {
+        return tableStatistics.isPostgres();
+    }
+
+    int subscriberCount() {
+        return subscribers.size();
+    }
+
+    // keeps idle connections open through proxies and finds the ones whose client has gone
+    @Scheduled(fixedDelayString = "${stream.heartbeat:PT15S}")
+    void heartbeat() {
+        subscribers.forEach(subscriber -> subscriber.buffer.offer(HEARTBEAT));
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            while (true) {
+                LiveEvent event = subscriber.buffer.take();
+                if (event == CLOSE) return;
+                if (event == HEARTBEAT) {
+                    subscriber.emitter.send(SseEmitter.event().comment("ping"));
+                } else {
+                    subscriber.emitter.send(SseEmitter.event().name(event.type()).data(event.data(), MediaType.APPLICATION_JSON));
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            close(subscriber);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void close(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            open.decrementAndGet();
+            subscriber.buffer.clear();
+            subscriber.buffer.offer(CLOSE);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void listen() {
+        if (!notifiesThroughDatabase()) return;
+        Thread.ofVirtual().name("live-updates-listener").start(() -> {
+            while (running) {
+                try (Connection connection = DriverManager.getConnection(url, username, password);
+                     Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                    PGConnection pg = connection.unwrap(PGConnection.class);
+                    while (running) {
+                        PGNotification[] notifications = pg.getNotifications(10_000);
+                        if (notifications == null) continue;
+                        for (PGNotification notification : notifications) {
+                            JsonNode envelope = objectMapper.readTree(notification.getParameter());
+                            LiveEvent event = new LiveEvent(envelope.get("type").asText(), envelope.get("data").toString());
+                            if (!NODE_ID.equals(envelope.path("node").asText())) {
+                                articleIndex.changed(event);
+                                recentSales.changed(event);
+                                stockTotals.changed(event);
+                                // TOTALS closes every transaction's events; another node's may have changed cached stock
+                                if (event.type().equals("TOTALS")) stockCache.evictAll();
+                            }
+                            dataVersions.changed(event);
+                            deliver(event);
+                        }
+                    }
+                } catch (Exception e) {
+                    if (!running) return;
+                    log.warn("Live updates listener lost its connection, reconnecting", e);
+                    sleepBeforeReconnect();
+                }
+            }
+        });
+    }
+
+    private void sleepBeforeReconnect() {
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        subscribers.forEach(subscriber -> {
+            close(subscriber);
+            subscriber.emitter.complete();
+        });
+    }
+
+    private record Subscriber(SseEmitter emitter, BlockingQueue<LiveEvent> buffer) {
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.stockmanager.services.Impl;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+// row count estimates from PostgreSQL's planner statistics; null on other databases or before the first ANALYZE
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TableStatistics {
+
+    private final DataSource dataSource;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private boolean postgres;
+
+    @PostConstruct
+    void detectDatabase() {
+        try (Connection connection = dataSource.getConnection()) {
+            postgres = "PostgreSQL".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName());
+        } catch (SQLException e) {
+            log.warn("Could not detect the database, row estimates are disabled", e);
+        }
+    }
+
+    public boolean isPostgres() {
+        return postgres;
+    }
+
+    public Long estimatedRowCount(String table) {
+        if (!postgres) return null;
+        List<?> rows = entityManager
+                .createNativeQuery("SELECT CAST(reltuples AS bigint) FROM pg_class WHERE oid = to_regclass(:table)")
+                .setParameter("table", table)
+                .getResultList();
+        Long estimate = rows.stream().map(row -> ((Number) row).longValue()).findFirst().orElse(null);
+        // reltuples is -1 until the table has been vacuumed or analyzed
+        return estimate != null && estimate >= 0 ? estimate : null;
+    }
+}
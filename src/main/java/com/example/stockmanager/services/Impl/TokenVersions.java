@@ -0,0 +1,115 @@
+package com.example.stockmanager.services.Impl;
+
+import com.example.stockmanager.repositories.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory copy of every user's token version, so the JWT filter can reject revoked tokens without a query.
+ * <p>
+ * Loaded at startup and reloaded every {@code jwt.token-versions.refresh-interval} to pick up changes made by
+ * other instances; this instance's own changes are applied through {@link #bump} and {@link #revokeAll} once
+ * their transaction commits, and are seen before that only by the transaction that made them. A user not yet
+ * known is read once from the database. Versions only ever move forward, so a reload that raced with a local
+ * change cannot bring a revoked token back.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TokenVersions {
+
+    // deleted users: no token version matches
+    private static final long REVOKED = Long.MAX_VALUE;
+
+    private final UserRepository userRepository;
+    private final Map<UUID, Long> versions = new ConcurrentHashMap<>();
+
+    public boolean isCurrent(UUID userId, long tokenVersion) {
+        PendingVersions pending = findPending();
+        Long current = pending == null ? null : pending.versions.get(userId);
+        if (current != null) {
+            return current == tokenVersion;
+        }
+        current = versions.get(userId);
+        if (current == null) {
+            current = userRepository.findTokenVersion(userId).orElse(REVOKED);
+            current = versions.merge(userId, current, Math::max);
+        }
+        return current == tokenVersion;
+    }
+
+    // called after the new version has been saved on the user
+    public void bump(UUID userId, long newVersion) {
+        apply(userId, newVersion);
+    }
+
+    public void revokeAll(UUID userId) {
+        apply(userId, REVOKED);
+    }
+
+    // a version moved forward by a transaction that then rolls back would reject every token of the user
+    private void apply(UUID userId, long version) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            versions.merge(userId, version, Math::max);
+            return;
+        }
+        PendingVersions pending = findPending();
+        if (pending == null) {
+            pending = new PendingVersions();
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.versions.merge(userId, version, Math::max);
+    }
+
+    private PendingVersions findPending() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return null;
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingVersions pending && pending.owner() == this) {
+                return pending;
+            }
+        }
+        return null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${jwt.token-versions.refresh-interval:PT1M}", initialDelayString = "${jwt.token-versions.refresh-interval:PT1M}")
+    public void reload() {
+        // users added meanwhile are missing from the rows below without having been deleted
+        Set<UUID> known = new HashSet<>(versions.keySet());
+        Set<UUID> existing = new HashSet<>();
+        for (Object[] row : userRepository.findAllTokenVersions()) {
+            UUID id = (UUID) row[0];
+            existing.add(id);
+            versions.merge(id, ((Number) row[1]).longValue(), Math::max);
+        }
+        known.removeAll(existing);
+        known.forEach(id -> versions.put(id, REVOKED));
+        log.debug("Loaded token versions for {} users", existing.size());
+    }
+
+    private class PendingVersions implements TransactionSynchronization {
+        private final Map<UUID, Long> versions = new HashMap<>();
+
+        TokenVersions owner() {
+            return TokenVersions.this;
+        }
+
+        @Override
+        public void afterCommit() {
+            versions.forEach((id, version) -> TokenVersions.this.versions.merge(id, version, Math::max));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.stockmanager.services.Impl;
+
+import com.example.stockmanager.entities.Users;
+import com.example.stockmanager.repositories.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Short-lived cache of the users the JWT filter had to load from the database, i.e. tokens issued before
+ * they carried the uid and role claims, or every token when {@code jwt.stateless-principal} is off.
+ * Entries live for {@code jwt.principal-cache-ttl}; changes to a user evict it right away.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserPrincipalCache {
+
+    private final UserRepository userRepository;
+    private final Map<String, CachedUser> users = new ConcurrentHashMap<>();
+
+    @Value("${jwt.principal-cache-ttl:PT30S}")
+    private Duration ttl;
+
+    @Value("${jwt.principal-cache-size:1024}")
+    private int maxSize;
+
+    public Users load(String email) {
+        Instant now = Instant.now();
+        CachedUser cached = users.get(email);
+        if (cached != null && now.isBefore(cached.expiresAt())) {
+            return cached.user();
+        }
+        Users user = userRepository.findByEmail(email).orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        if (ttl.isPositive()) {
+            if (users.size() >= maxSize) {
+                users.values().removeIf(entry -> !now.isBefore(entry.expiresAt()));
+                if (users.size() >= maxSize) users.clear();
+            }
+            users.put(email, new CachedUser(user, now.plus(ttl)));
+        }
+        return user;
+    }
+
+    public void evict(String email) {
+        if (email != null) users.remove(email);
+    }
+
+    private record CachedUser(Users user, Instant expiresAt) {
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.stockmanager.services.Impl;
 
 import com.example.stockmanager.dtos.PageDto;
+import com.example.stockmanager.dtos.SliceDto;
 import com.example.stockmanager.dtos.UserDto;
 import com.example.stockmanager.entities.Role;
 import com.example.stockmanager.entities.Users;
@@ -14,13 +15,12 @@ import lombok.RequiredArgsConstructor;
 import org.apache.kafka.common.errors.ResourceNotFoundException;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Page;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSenderImpl;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.UUID;
 
@@ -32,22 +32,21 @@ public class UserServiceImpl implements UserServices {
     private final JwtServiceImpl jwtService;
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
-    private final JavaMailSenderImpl mailSender;
+    private final MailOutbox mailOutbox;
     private final PageServiceImpl pageService;
+    private final TableStatistics tableStatistics;
+    private final UserPrincipalCache userPrincipalCache;
+    private final TokenVersions tokenVersions;
+    private final TransactionTemplate transactionTemplate;
 
     private String generateRandomPassword() {
         return UUID.randomUUID().toString().substring(0, 10);
     }
 
     private void sendWelcomeEmail(String to, String password, String firstName) {
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setTo(to);
-        message.setSubject("Welcome to DALYDA");
-        message.setText("Hello," + " "+firstName +
+        mailOutbox.enqueue(to, "Welcome to DALYDA", "Hello," + " "+firstName +
                 "\n\nWelcome to DALYDA, Your temporary password is: " + password +
                 "\n\nPlease log in and change it to your own password.\n\nThank you.");
-
-        mailSender.send(message);
     }
 
     @Override
@@ -57,26 +56,28 @@ public class UserServiceImpl implements UserServices {
         return jwtService.generateToken(user);
     }
 
+    // the user change and its mail commit together; the password is hashed before, so no connection waits on it
     @Override
     public String passwordReset(String email) {
 
         if (!userRepository.existsByEmail(email)) throw new ResourceNotFoundException("Email does not exist");
 
-        var user = userRepository.findByEmail(email).orElseThrow();
         String password = generateRandomPassword();
-
         String encodedPassword = passwordEncoder.encode(password);
-        user.setPassword(encodedPassword);
-        userRepository.save(user);
-
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setTo(email);
-        message.setSubject("Reset Password");
-        message.setText("Hello," +
-                "\n\n Your new Password is:" +" "+ password +
-                "\n\nPlease log in and update your password.\n\nThank you.");
 
-        mailSender.send(message);
+        transactionTemplate.executeWithoutResult(status -> {
+            var user = userRepository.findByEmail(email)
+                    .orElseThrow(() -> new ResourceNotFoundException("Email does not exist"));
+            user.setPassword(encodedPassword);
+            user.setTokenVersion(user.getTokenVersion() + 1);
+            userRepository.save(user);
+            tokenVersions.bump(user.getId(), user.getTokenVersion());
+            userPrincipalCache.evict(email);
+
+            mailOutbox.enqueue(email, "Reset Password", "Hello," +
+                    "\n\n Your new Password is:" +" "+ password +
+                    "\n\nPlease log in and update your password.\n\nThank you.");
+        });
         return email;
     }
 
@@ -90,15 +91,20 @@ public class UserServiceImpl implements UserServices {
         String encodedPassword = passwordEncoder.encode(rawPassword);
         user.setPassword(encodedPassword);
         user.setRole(role);
-        userRepository.save(user);
 
-        sendWelcomeEmail(user.getEmail(), rawPassword, user.getFirstname());
+        // the user and its welcome mail commit together
+        transactionTemplate.executeWithoutResult(status -> {
+            userRepository.save(user);
+            sendWelcomeEmail(user.getEmail(), rawPassword, user.getFirstname());
+        });
         return UserMapper.map(user);
     }
 
     @Override
     public void passwordChange(UserDto.ChangePasswordDto changePasswordDto) {
-        var user = AuthenticatedUser.getAuthenticatedUser();
+        // the principal may carry only token claims, so the password hash is always read fresh
+        var userId = AuthenticatedUser.getAuthenticatedUserId();
+        var user = userId == null ? null : userRepository.findUserById(userId).orElse(null);
         if (user == null) throw new ResourceNotFoundException("User not found, Please LogIn to Change your password");
 
         if (!passwordEncoder.matches(changePasswordDto.getOldPassword(), user.getPassword())) {
@@ -110,7 +116,10 @@ public class UserServiceImpl implements UserServices {
         }
 
         user.setPassword(passwordEncoder.encode(changePasswordDto.getNewPassword()));
+        user.setTokenVersion(user.getTokenVersion() + 1);
         userRepository.save(user);
+        tokenVersions.bump(user.getId(), user.getTokenVersion());
+        userPrincipalCache.evict(user.getEmail());
     }
 
     @Override
@@ -120,6 +129,8 @@ public class UserServiceImpl implements UserServices {
         var email = users.get().getEmail();
         if (email.equals(AuthenticatedUser.getAuthenticatedUserEmail())) throw new ForbiddenActionException("You cannot delete a signed in user");
         userRepository.deleteById(id);
+        tokenVersions.revokeAll(id);
+        userPrincipalCache.evict(email);
     }
 
     @Override
@@ -129,8 +140,13 @@ public class UserServiceImpl implements UserServices {
                 && !updateUserDto.getEmail().equals(AuthenticatedUser.getAuthenticatedUserEmail()))
             throw new DuplicateKeyException("Email is already in use");
         var user = userRepository.findUserById(id).orElseThrow();
+        userPrincipalCache.evict(user.getEmail());
+        // the token's subject and role claims must not outlive a change to either
+        boolean claimsChanged = !user.getEmail().equals(updateUserDto.getEmail()) || user.getRole() != updateUserDto.getRole();
         user.updateUser(updateUserDto);
+        if (claimsChanged) user.setTokenVersion(user.getTokenVersion() + 1);
         userRepository.save(user);
+        if (claimsChanged) tokenVersions.bump(user.getId(), user.getTokenVersion());
         return UserMapper.map(user);
     }
 
@@ -139,7 +155,15 @@ public class UserServiceImpl implements UserServices {
         var pageable = pageService.getPageable(pageDto);
         var users = userRepository.findAllUsers(pageable);
         if (users.isEmpty()) throw new ResourceNotFoundException("No Registered Users Yet");
-        return users.map(UserMapper::map);
+        return users;
+    }
+
+    @Override
+    public SliceDto<UserDto.ViewUserDto> viewAllUsersSlice(PageDto pageDto) {
+        var pageable = pageService.getPageable(pageDto);
+        var users = userRepository.sliceAllUsers(pageable);
+        if (users.isEmpty()) throw new ResourceNotFoundException("No Registered Users Yet");
+        return pageService.toSliceDto(users, tableStatistics.estimatedRowCount("users"));
     }
 
     @Override
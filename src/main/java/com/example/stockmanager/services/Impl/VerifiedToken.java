@@ -0,0 +1,51 @@
+package com.example.stockmanager.services.Impl;
+
+import com.example.stockmanager.entities.Role;
+import io.jsonwebtoken.Claims;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+// claims of a token whose signature and expiry have been checked, parsed once per token
+public record VerifiedToken(Claims claims) {
+
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String ROLE_CLAIM = "role";
+    public static final String VERSION_CLAIM = "ver";
+
+    public String subject() {
+        return claims.getSubject();
+    }
+
+    public List<String> roles() {
+        Object role = claims.get(ROLE_CLAIM);
+        return role == null ? List.of() : List.of(role.toString());
+    }
+
+    // null for tokens issued before the uid and role claims were added, or with values this build does not know
+    public TokenPrincipal principal() {
+        Object id = claims.get(USER_ID_CLAIM);
+        Object role = claims.get(ROLE_CLAIM);
+        if (id == null || role == null || subject() == null) return null;
+        try {
+            return new TokenPrincipal(UUID.fromString(id.toString()), subject(), Role.valueOf(role.toString()));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // tokens issued before versions existed count as version 0
+    public long tokenVersion() {
+        Object version = claims.get(VERSION_CLAIM);
+        return version instanceof Number number ? number.longValue() : 0;
+    }
+
+    public Instant expiresAt() {
+        return claims.getExpiration().toInstant();
+    }
+
+    public boolean isExpired() {
+        return !expiresAt().isAfter(Instant.now());
+    }
+}
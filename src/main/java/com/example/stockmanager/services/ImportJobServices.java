@@ -0,0 +1,11 @@
+package com.example.stockmanager.services;
+
+import com.example.stockmanager.dtos.ImportJobDto;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.UUID;
+
+public interface ImportJobServices {
+    ImportJobDto.ViewImportJobDto submitStockImport(MultipartFile file);
+    ImportJobDto.ViewImportJobDto getJob(UUID id);
+}
@@ -1,7 +1,10 @@
 package com.example.stockmanager.services;
 
+import com.example.stockmanager.dtos.CursorPageDto;
 import com.example.stockmanager.dtos.PageDto;
 import com.example.stockmanager.dtos.SalesDto;
+import com.example.stockmanager.dtos.SliceDto;
+import com.example.stockmanager.dtos.StockDto;
 import org.springframework.data.domain.Page;
 
 import java.util.List;
@@ -10,10 +13,16 @@ import java.util.UUID;
 public interface SalesServices {
 
     SalesDto.ViewSalesDto addSales(SalesDto.AddSalesDto salesDto);
+    List<SalesDto.ViewSalesDto> addSalesBatch(SalesDto.AddSalesBatchDto batch);
     List<SalesDto.ViewSalesDto> recentSales();
     Page<SalesDto.ViewSalesDto> viewSales(PageDto pageDto);
     Page<SalesDto.ViewSalesDto> viewSalesFiltered(SalesDto.SalesDateDto dateDto);
+    SliceDto<SalesDto.ViewSalesDto> viewSalesSlice(PageDto pageDto);
+    SliceDto<SalesDto.ViewSalesDto> viewSalesFilteredSlice(SalesDto.SalesDateDto dateDto);
+    CursorPageDto<SalesDto.ViewSalesDto> viewSalesByCursor(String cursor, Integer size);
+    CursorPageDto<SalesDto.ViewSalesDto> viewSalesFilteredByCursor(SalesDto.SalesDateDto dateDto, String cursor);
     String getItemName (String articleCode);
+    List<StockDto.ViewStockDto> findArticles(String code, String name);
     void deleteSales(UUID id);
     SalesDto.ViewSalesDto updateSale(UUID id, SalesDto.UpdateSalesDto updateDto);
 }
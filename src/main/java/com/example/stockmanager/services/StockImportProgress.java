@@ -0,0 +1,19 @@
+package com.example.stockmanager.services;
+
+// receives row counts while a stock file is being imported
+public interface StockImportProgress {
+
+    StockImportProgress NONE = new StockImportProgress() {
+        @Override
+        public void rowsParsed(int rows) {
+        }
+
+        @Override
+        public void rowsApplied(int rows) {
+        }
+    };
+
+    void rowsParsed(int rows);
+
+    void rowsApplied(int rows);
+}
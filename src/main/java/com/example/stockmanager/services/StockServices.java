@@ -1,11 +1,13 @@
 package com.example.stockmanager.services;
 
 import com.example.stockmanager.dtos.PageDto;
+import com.example.stockmanager.dtos.SliceDto;
 import com.example.stockmanager.dtos.StockDto;
 import com.example.stockmanager.entities.ContainerWeights;
 import org.springframework.data.domain.Page;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.nio.file.Path;
 import java.util.List;
 import java.util.UUID;
 
@@ -17,8 +19,11 @@ public interface StockServices {
     Integer getBagStock ();
     StockDto.ViewStockDto addStock (StockDto.AddStockDto stockDto, ContainerWeights weight);
     Page<StockDto.ViewStockDto> viewStockFilter (PageDto pageable, ContainerWeights weight, String containerName);
+    SliceDto<StockDto.ViewStockDto> viewStockFilterSlice (PageDto pageable, ContainerWeights weight, String containerName);
+    List<StockDto.ViewStockDto> search (String query, Integer limit);
     List<String> findAllContainers();
     int uploadStockFile (MultipartFile file);
+    int importStockFile (Path file, StockImportProgress progress);
     StockDto.ViewStockDto updateStock(UUID id, StockDto.UpdateStockDto updateDto);
     void deleteStock(UUID id);
 }
@@ -0,0 +1,8 @@
+package com.example.stockmanager.services;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public interface StreamServices {
+
+    SseEmitter subscribe();
+}
@@ -1,6 +1,7 @@
 package com.example.stockmanager.services;
 
 import com.example.stockmanager.dtos.PageDto;
+import com.example.stockmanager.dtos.SliceDto;
 import com.example.stockmanager.dtos.UserDto;
 import com.example.stockmanager.entities.Role;
 import org.springframework.data.domain.Page;
@@ -15,5 +16,6 @@ public interface UserServices {
     void deleteUser (UUID id);
     UserDto.ViewUserDto updateUser (UUID id, UserDto.UpdateUserDto signupDto);
     Page<UserDto.ViewUserDto> viewAllUsers (PageDto pageDto);
+    SliceDto<UserDto.ViewUserDto> viewAllUsersSlice (PageDto pageDto);
     UserDto.ViewDefaultAdminUserDto defaultAdminUser();
 }
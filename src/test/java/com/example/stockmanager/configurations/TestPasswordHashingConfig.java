@@ -0,0 +1,78 @@
+package com.example.stockmanager.configurations;
+
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// one hashing thread and room for one more, so a hash held at the gate and one queued behind it saturate the pool
+@TestConfiguration
+public class TestPasswordHashingConfig {
+
+    @Bean
+    public GatedPasswordEncoder gatedPasswordEncoder() {
+        return new GatedPasswordEncoder(new BCryptPasswordEncoder(4));
+    }
+
+    @Bean
+    @Primary
+    public BoundedPasswordEncoder boundedPasswordEncoder(GatedPasswordEncoder gatedPasswordEncoder) {
+        return new BoundedPasswordEncoder(gatedPasswordEncoder, 1, 1);
+    }
+
+    public static class GatedPasswordEncoder implements PasswordEncoder {
+
+        private final PasswordEncoder delegate;
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+        private volatile CountDownLatch entered = new CountDownLatch(1);
+        private volatile String lastThread;
+
+        GatedPasswordEncoder(PasswordEncoder delegate) {
+            this.delegate = delegate;
+        }
+
+        // hashing waits from here on until open() is called
+        public void close() {
+            entered = new CountDownLatch(1);
+            gate = new CountDownLatch(1);
+        }
+
+        public void open() {
+            gate.countDown();
+        }
+
+        public boolean awaitEntered() throws InterruptedException {
+            return entered.await(5, TimeUnit.SECONDS);
+        }
+
+        public String lastThread() {
+            return lastThread;
+        }
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            pass();
+            return delegate.encode(rawPassword);
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            pass();
+            return delegate.matches(rawPassword, encodedPassword);
+        }
+
+        private void pass() {
+            lastThread = Thread.currentThread().getName();
+            entered.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -5,7 +5,12 @@ import com.example.stockmanager.dtos.UserDto;
 import com.example.stockmanager.entities.Role;
 import com.example.stockmanager.entities.Users;
 import com.example.stockmanager.repositories.UserRepository;
+import com.example.stockmanager.services.Impl.JwtServiceImpl;
+import com.example.stockmanager.services.UserServices;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,11 +20,15 @@ import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.util.HashMap;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -47,6 +56,20 @@ class AuthControllerTest {
 
     private UserDto.LoginDto loginDto;
 
+    @Autowired
+    private JwtServiceImpl jwtService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private UserServices userService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private static final String FIND_BY_EMAIL = "SELECT u FROM Users u WHERE u.email = :email";
+
     @BeforeEach
     void setUp() {
         userRepository.deleteAll();
@@ -96,6 +119,96 @@ class AuthControllerTest {
                 .andExpect(jsonPath("$.data").isString());
     }
 
+    @Test
+    void testLogin_TokenAuthenticatesRequests() throws Exception {
+        String token = login();
+
+        // the second request is served from the verified-token cache
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get("/api/v1/stock/total")
+                            .header("Authorization", "Bearer " + token))
+                    .andExpect(status().isOk());
+        }
+        mockMvc.perform(get("/api/v1/users")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void testLogin_TokenAuthenticatesWithoutUserQuery() throws Exception {
+        String token = login();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long before = statistics.getQueryStatistics(FIND_BY_EMAIL).getExecutionCount();
+
+        mockMvc.perform(get("/api/v1/stock/total")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        assertEquals(before, statistics.getQueryStatistics(FIND_BY_EMAIL).getExecutionCount());
+    }
+
+    @Test
+    void testLogin_TokenWithoutRoleClaimsStillAuthenticates() throws Exception {
+        // tokens issued before the uid and role claims existed are resolved through the cached user lookup
+        String token = jwtService.generateToken(new HashMap<>(), testUser);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long before = statistics.getQueryStatistics(FIND_BY_EMAIL).getExecutionCount();
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get("/api/v1/stock/total")
+                            .header("Authorization", "Bearer " + token))
+                    .andExpect(status().isOk());
+        }
+
+        assertTrue(statistics.getQueryStatistics(FIND_BY_EMAIL).getExecutionCount() - before <= 1);
+    }
+
+    @Test
+    void testPasswordChange_RevokesIssuedTokens() throws Exception {
+        String token = login();
+        var changePasswordDto = new UserDto.ChangePasswordDto();
+        changePasswordDto.setOldPassword("password123");
+        changePasswordDto.setNewPassword("newPassword123");
+        changePasswordDto.setConfirmPassword("newPassword123");
+
+        mockMvc.perform(post("/api/v1/users/password/change")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(changePasswordDto)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/v1/stock/total")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isUnauthorized());
+
+        loginDto.setPassword("newPassword123");
+        mockMvc.perform(get("/api/v1/stock/total")
+                        .header("Authorization", "Bearer " + login()))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testPasswordReset_RolledBackKeepsIssuedTokens() throws Exception {
+        try {
+            String token = login();
+
+            transactionTemplate.executeWithoutResult(status -> {
+                userService.passwordReset("test@example.com");
+                status.setRollbackOnly();
+            });
+
+            mockMvc.perform(get("/api/v1/stock/total")
+                            .header("Authorization", "Bearer " + token))
+                    .andExpect(status().isOk());
+            mockMvc.perform(get("/api/v1/stock/total")
+                            .header("Authorization", "Bearer " + login()))
+                    .andExpect(status().isOk());
+        } finally {
+            userRepository.deleteAll();
+        }
+    }
+
     @Test
     void testLogin_InvalidEmail() throws Exception {
         loginDto.setEmail("invalid-email");
@@ -159,6 +272,12 @@ class AuthControllerTest {
                 .andExpect(jsonPath("$.data").isEmpty());
     }
 
-
+    private String login() throws Exception {
+        var login = mockMvc.perform(post("/api/v1/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(loginDto)))
+                .andExpect(status().isOk())
+                .andReturn();
+        return objectMapper.readTree(login.getResponse().getContentAsString()).get("data").asText();
+    }
 }
-
@@ -0,0 +1,138 @@
+package com.example.stockmanager.controllers;
+
+import com.example.stockmanager.dtos.SalesDto;
+import com.example.stockmanager.entities.ContainerWeights;
+import com.example.stockmanager.entities.Stock;
+import com.example.stockmanager.repositories.SalesRepository;
+import com.example.stockmanager.repositories.StockRepository;
+import com.example.stockmanager.services.SalesServices;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// not @Transactional: the dashboard reads containers on a worker thread, which only sees committed data
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class DashboardControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SalesServices salesService;
+
+    @Autowired
+    private SalesRepository salesRepository;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void setUp() {
+        salesRepository.deleteAll();
+        stockRepository.deleteAll();
+
+        Stock stock75 = new Stock("ST001", "Test Item 75KG", 100, "Container1");
+        stock75.setWeight(ContainerWeights.KG_75);
+        stockRepository.save(stock75);
+
+        Stock stockBags = new Stock("ST003", "Test Item Bags", 30, "Container3");
+        stockBags.setWeight(ContainerWeights.BAGS);
+        stockRepository.save(stockBags);
+    }
+
+    @AfterEach
+    void tearDown() {
+        salesRepository.deleteAll();
+        stockRepository.deleteAll();
+    }
+
+    @Test
+    @WithMockUser(authorities = "ADMIN")
+    void testDashboard_Admin() throws Exception {
+        SalesDto.AddSalesDto sale = new SalesDto.AddSalesDto();
+        sale.setDate(LocalDate.now());
+        sale.setCode("ST001");
+        sale.setName("Test Item 75KG");
+        sale.setQuantity(10);
+        sale.setPrice(100.0);
+        sale.setTotalPrice(1000.0);
+        sale.setWeight(ContainerWeights.KG_75);
+        sale.setContainerName("Container1");
+        salesService.addSales(sale);
+
+        mockMvc.perform(get("/api/v1/dashboard"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").value("Dashboard"))
+                .andExpect(jsonPath("$.data.totalStock").value(120))
+                .andExpect(jsonPath("$.data.stock75KG").value(90))
+                .andExpect(jsonPath("$.data.stock45KG").value(0))
+                .andExpect(jsonPath("$.data.bagStock").value(30))
+                .andExpect(jsonPath("$.data.recentSales.length()").value(1))
+                .andExpect(jsonPath("$.data.recentSales[0].name").value("Test Item 75KG"))
+                .andExpect(jsonPath("$.data.containers.length()").value(2))
+                .andExpect(jsonPath("$.data.generatedAt").exists());
+    }
+
+    @Test
+    @WithMockUser(authorities = "USER")
+    void testDashboard_UserWithoutSales() throws Exception {
+        mockMvc.perform(get("/api/v1/dashboard"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.totalStock").value(130))
+                .andExpect(jsonPath("$.data.recentSales").isEmpty())
+                .andExpect(jsonPath("$.data.containers").doesNotExist());
+    }
+
+    @Test
+    @WithMockUser(authorities = "USER")
+    void testDashboard_TotalsAndRecentSalesNeedNoTransaction() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        // the first read loads the recent sales into memory
+        mockMvc.perform(get("/api/v1/dashboard")).andExpect(status().isOk());
+
+        statistics.clear();
+        mockMvc.perform(get("/api/v1/dashboard"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.totalStock").value(130));
+        assertEquals(0, statistics.getTransactionCount());
+    }
+
+    @Test
+    @WithMockUser(authorities = "ADMIN")
+    void testDashboard_ContainersTakeOneTransaction() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        mockMvc.perform(get("/api/v1/dashboard")).andExpect(status().isOk());
+
+        statistics.clear();
+        mockMvc.perform(get("/api/v1/dashboard"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.containers.length()").value(2));
+        assertEquals(1, statistics.getTransactionCount());
+    }
+
+    @Test
+    void testDashboard_Unauthenticated() throws Exception {
+        mockMvc.perform(get("/api/v1/dashboard"))
+                .andExpect(status().isUnauthorized());
+    }
+}
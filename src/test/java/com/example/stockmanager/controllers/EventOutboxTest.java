@@ -0,0 +1,176 @@
+package com.example.stockmanager.controllers;
+
+import com.example.stockmanager.configurations.TestMailConfig;
+import com.example.stockmanager.dtos.SalesDto;
+import com.example.stockmanager.dtos.StockDto;
+import com.example.stockmanager.entities.ContainerWeights;
+import com.example.stockmanager.entities.OutboxEvent;
+import com.example.stockmanager.entities.Stock;
+import com.example.stockmanager.repositories.OutboxEventRepository;
+import com.example.stockmanager.services.Impl.KafkaEventRelay;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "events.enabled=true",
+        "events.relay.poll-interval=PT1H",
+        "spring.autoconfigure.exclude=",
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Transactional
+@Import(TestMailConfig.class)
+@EmbeddedKafka(partitions = 2, topics = "stock-manager-events")
+class EventOutboxTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private KafkaEventRelay kafkaEventRelay;
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafka;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private StockDto.AddStockDto addStockDto;
+    private SalesDto.AddSalesDto addSalesDto;
+    private String stockKey;
+
+    @BeforeEach
+    void setUp() {
+        addStockDto = new StockDto.AddStockDto();
+        addStockDto.setItem_code("EV001");
+        addStockDto.setItem_name("Event Item");
+        addStockDto.setQuantity(20);
+        addStockDto.setContainer_name("Event Container");
+
+        addSalesDto = new SalesDto.AddSalesDto();
+        addSalesDto.setDate(LocalDate.now());
+        addSalesDto.setCode("EV001");
+        addSalesDto.setName("Event Item");
+        addSalesDto.setQuantity(5);
+        addSalesDto.setPrice(10.0);
+        addSalesDto.setTotalPrice(50.0);
+        addSalesDto.setWeight(ContainerWeights.KG_75);
+        addSalesDto.setContainerName("Event Container");
+
+        stockKey = Stock.lookupKey("Event Item", ContainerWeights.KG_75, "Event Container");
+    }
+
+    @Test
+    @WithMockUser(authorities = "ADMIN")
+    void testMutations_WriteEventsAndRelayThemInOrder() throws Exception {
+        addStock();
+        addSale().andExpect(status().isCreated());
+
+        List<OutboxEvent> written = eventsFor(stockKey);
+        assertEquals(List.of("STOCK_ADDED", "SALE_RECORDED"), written.stream().map(OutboxEvent::getType).toList());
+
+        assertTrue(kafkaEventRelay.publishPending() >= 2);
+        written.forEach(event -> assertNotNull(outboxEventRepository.findById(event.getId()).orElseThrow().getPublishedAt()));
+
+        List<ConsumerRecord<String, String>> records = consumeFor(stockKey, 2);
+        assertEquals(records.get(0).partition(), records.get(1).partition());
+        JsonNode stockEvent = objectMapper.readTree(records.get(0).value());
+        assertEquals("STOCK_ADDED", stockEvent.get("type").asText());
+        assertEquals(20, stockEvent.get("quantity").asInt());
+
+        JsonNode saleEvent = objectMapper.readTree(records.get(1).value());
+        assertEquals("SALE_RECORDED", saleEvent.get("type").asText());
+        assertEquals(5, saleEvent.get("quantity").asInt());
+    }
+
+    @Test
+    @WithMockUser(authorities = "ADMIN")
+    void testFailedMutation_WritesNoEvent() throws Exception {
+        addStock();
+        addSalesDto.setQuantity(500);
+
+        addSale().andExpect(status().isConflict());
+
+        assertEquals(List.of("STOCK_ADDED"),
+                eventsFor(stockKey).stream().map(OutboxEvent::getType).toList());
+    }
+
+    private List<OutboxEvent> eventsFor(String key) {
+        return entityManager.createQuery("SELECT e FROM OutboxEvent e WHERE e.key = :key ORDER BY e.id", OutboxEvent.class)
+                .setParameter("key", key)
+                .getResultList();
+    }
+
+    private void addStock() throws Exception {
+        mockMvc.perform(post("/api/v1/stock/add/stock")
+                        .with(csrf())
+                        .param("weight", "KG_75")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(addStockDto)))
+                .andExpect(status().isCreated());
+    }
+
+    private ResultActions addSale() throws Exception {
+        return mockMvc.perform(post("/api/v1/sales/add")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(addSalesDto)));
+    }
+
+    // reads the topic from the start and keeps the records for one key, in offset order
+    private List<ConsumerRecord<String, String>> consumeFor(String key, int expected) {
+        var props = KafkaTestUtils.consumerProps("event-outbox-test-" + System.nanoTime(), "false", embeddedKafka);
+        props.put("auto.offset.reset", "earliest");
+        try (Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), new StringDeserializer()).createConsumer()) {
+            embeddedKafka.consumeFromAnEmbeddedTopic(consumer, "stock-manager-events");
+            List<ConsumerRecord<String, String>> matching = new ArrayList<>();
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (matching.size() < expected && System.currentTimeMillis() < deadline) {
+                ConsumerRecords<String, String> records = KafkaTestUtils.getRecords(consumer, Duration.ofMillis(500));
+                records.forEach(record -> {
+                    if (key.equals(record.key())) matching.add(record);
+                });
+            }
+            return matching;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.stockmanager.controllers;
+
+import com.example.stockmanager.configurations.BoundedPasswordEncoder;
+import com.example.stockmanager.configurations.TestMailConfig;
+import com.example.stockmanager.configurations.TestPasswordHashingConfig;
+import com.example.stockmanager.dtos.UserDto;
+import com.example.stockmanager.entities.Role;
+import com.example.stockmanager.entities.Users;
+import com.example.stockmanager.repositories.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Transactional
+@Import({TestMailConfig.class, TestPasswordHashingConfig.class})
+class PasswordHashingTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BoundedPasswordEncoder passwordEncoder;
+
+    @Autowired
+    private TestPasswordHashingConfig.GatedPasswordEncoder gatedPasswordEncoder;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private UserDto.LoginDto loginDto;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+
+        Users testUser = new Users("Test", "User", "test@example.com", "1234567890");
+        testUser.setPassword(passwordEncoder.encode("password123"));
+        testUser.setRole(Role.USER);
+        userRepository.save(testUser);
+
+        loginDto = new UserDto.LoginDto();
+        loginDto.setEmail("test@example.com");
+        loginDto.setPassword("password123");
+    }
+
+    @Test
+    void testEncodeAndMatch_RunOnHashingPool() {
+        String encoded = passwordEncoder.encode("secret");
+        assertTrue(gatedPasswordEncoder.lastThread().startsWith("password-hash-"));
+
+        assertNotEquals("secret", encoded);
+        assertTrue(passwordEncoder.matches("secret", encoded));
+        assertFalse(passwordEncoder.matches("not the secret", encoded));
+        assertTrue(gatedPasswordEncoder.lastThread().startsWith("password-hash-"));
+
+        // the delegate's own exceptions reach the caller unchanged
+        assertThrows(IllegalArgumentException.class, () -> passwordEncoder.encode(null));
+    }
+
+    @Test
+    void testLogin_SaturatedHashingPoolReturns503() throws Exception {
+        String credentials = objectMapper.writeValueAsString(loginDto);
+        gatedPasswordEncoder.close();
+        CompletableFuture<String> held = CompletableFuture.supplyAsync(() -> passwordEncoder.encode("held"));
+        CompletableFuture<String> queued = null;
+        try {
+            assertTrue(gatedPasswordEncoder.awaitEntered());
+            queued = CompletableFuture.supplyAsync(() -> passwordEncoder.encode("queued"));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (passwordEncoder.queued() == 0 && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            assertEquals(1, passwordEncoder.queued());
+
+            mockMvc.perform(post("/api/v1/auth/login")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(credentials))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(jsonPath("$.message").value("Too many sign-ins are in progress, please try again in a moment."));
+        } finally {
+            gatedPasswordEncoder.open();
+        }
+        assertNotNull(held.get(5, TimeUnit.SECONDS));
+        assertNotNull(queued.get(5, TimeUnit.SECONDS));
+
+        mockMvc.perform(post("/api/v1/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(credentials))
+                .andExpect(status().isOk());
+    }
+}
@@ -2,28 +2,44 @@ package com.example.stockmanager.controllers;
 
 import com.example.stockmanager.dtos.SalesDto;
 import com.example.stockmanager.entities.ContainerWeights;
+import com.example.stockmanager.entities.IdempotencyRecord;
 import com.example.stockmanager.entities.Role;
+import com.example.stockmanager.entities.Sales;
 import com.example.stockmanager.entities.Stock;
 import com.example.stockmanager.entities.Users;
+import com.example.stockmanager.configurations.IdempotencyFilter;
+import com.example.stockmanager.repositories.IdempotencyRecordRepository;
 import com.example.stockmanager.repositories.SalesRepository;
 import com.example.stockmanager.repositories.StockRepository;
 import com.example.stockmanager.repositories.UserRepository;
+import com.example.stockmanager.services.Impl.IdempotencyStore;
 import com.example.stockmanager.services.SalesServices;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.json.JsonCompareMode;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -53,12 +69,21 @@ public class SalesControllerTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
     @Autowired
     private PasswordEncoder passwordEncoder;
 
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     private Stock testStock;
     private SalesDto.AddSalesDto addSalesDto;
 
@@ -118,6 +143,176 @@ public class SalesControllerTest {
         assertEquals(90, updatedStock.getQuantity());
     }
 
+    @Test
+    @WithMockUser(authorities = "USER")
+    void testAddSalesBatch_Success() throws Exception {
+        Stock other = new Stock("ST002", "Other Item", 20, "Container2");
+        other.setWeight(ContainerWeights.KG_45);
+        stockRepository.save(other);
+
+        SalesDto.AddSalesDto secondLine = saleLine("Test Item", ContainerWeights.KG_75, "Container1", 5);
+        SalesDto.AddSalesDto otherLine = saleLine("Other Item", ContainerWeights.KG_45, "Container2", 20);
+
+        mockMvc.perform(post("/api/v1/sales/batch")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new SalesDto.AddSalesBatchDto(List.of(addSalesDto, otherLine, secondLine)))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.message").value("Sales Added successfully!"))
+                .andExpect(jsonPath("$.data.length()").value(3))
+                .andExpect(jsonPath("$.data[1].name").value("Other Item"))
+                .andExpect(jsonPath("$.data[2].quantity").value(5));
+
+        // both lines of the same item come off its stock, a line that sells out the stock removes it
+        assertEquals(85, stockRepository.findByCode("ST001").orElseThrow().getQuantity());
+        assertTrue(stockRepository.findByCode("ST002").isEmpty());
+        assertEquals(3, salesRepository.count());
+    }
+
+    @Test
+    @WithMockUser(authorities = "USER")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testAddSalesBatch_RejectsWholeReceipt() throws Exception {
+        try {
+            Stock other = new Stock("ST002", "Other Item", 20, "Container2");
+            other.setWeight(ContainerWeights.KG_45);
+            stockRepository.save(other);
+
+            var receipt = new SalesDto.AddSalesBatchDto(List.of(
+                    addSalesDto,
+                    saleLine("Other Item", ContainerWeights.KG_45, "Container2", 15),
+                    saleLine("Missing Item", ContainerWeights.BAGS, "Container9", 1),
+                    saleLine("Other Item", ContainerWeights.KG_45, "Container2", 10)));
+
+            mockMvc.perform(post("/api/v1/sales/batch")
+                            .with(csrf())
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(receipt)))
+                    .andExpect(status().isConflict())
+                    .andExpect(jsonPath("$.data.length()").value(3))
+                    .andExpect(jsonPath("$.data[0].index").value(1))
+                    .andExpect(jsonPath("$.data[0].available").value(20))
+                    .andExpect(jsonPath("$.data[1].index").value(2))
+                    .andExpect(jsonPath("$.data[1].message").value("You don't have such product in stock"))
+                    .andExpect(jsonPath("$.data[2].index").value(3));
+
+            // the line that could be sold was rolled back with the rest
+            assertEquals(100, stockRepository.findByCode("ST001").orElseThrow().getQuantity());
+            assertEquals(20, stockRepository.findByCode("ST002").orElseThrow().getQuantity());
+            assertEquals(0, salesRepository.count());
+
+            mockMvc.perform(post("/api/v1/sales/batch")
+                            .with(csrf())
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(new SalesDto.AddSalesBatchDto(List.of()))))
+                    .andExpect(status().isBadRequest());
+        } finally {
+            salesRepository.deleteAll();
+            stockRepository.deleteAll();
+            userRepository.deleteAll();
+        }
+    }
+
+    @Test
+    @WithMockUser(authorities = "USER")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testAddSales_IdempotencyKeyReplaysRetries() throws Exception {
+        try {
+            String body = objectMapper.writeValueAsString(addSalesDto);
+            String first = mockMvc.perform(post("/api/v1/sales/add")
+                            .with(csrf())
+                            .header(IdempotencyFilter.KEY_HEADER, "till-1-receipt-42")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(body))
+                    .andExpect(status().isCreated())
+                    .andExpect(header().doesNotExist(IdempotencyFilter.REPLAYED_HEADER))
+                    .andReturn().getResponse().getContentAsString();
+
+            // the retry gets the first response back and sells nothing more
+            mockMvc.perform(post("/api/v1/sales/add")
+                            .with(csrf())
+                            .header(IdempotencyFilter.KEY_HEADER, "till-1-receipt-42")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(body))
+                    .andExpect(status().isCreated())
+                    .andExpect(header().string(IdempotencyFilter.REPLAYED_HEADER, "true"))
+                    .andExpect(content().json(first, JsonCompareMode.STRICT));
+            assertEquals(90, stockRepository.findByCode("ST001").orElseThrow().getQuantity());
+            assertEquals(1, salesRepository.count());
+
+            addSalesDto.setQuantity(5);
+            mockMvc.perform(post("/api/v1/sales/add")
+                            .with(csrf())
+                            .header(IdempotencyFilter.KEY_HEADER, "till-1-receipt-42")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(addSalesDto)))
+                    .andExpect(status().isUnprocessableEntity());
+
+            // a failed write is not kept, the corrected request may reuse its key
+            addSalesDto.setQuantity(200);
+            mockMvc.perform(post("/api/v1/sales/add")
+                            .with(csrf())
+                            .header(IdempotencyFilter.KEY_HEADER, "till-1-receipt-43")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(addSalesDto)))
+                    .andExpect(status().isConflict());
+            addSalesDto.setQuantity(5);
+            mockMvc.perform(post("/api/v1/sales/add")
+                            .with(csrf())
+                            .header(IdempotencyFilter.KEY_HEADER, "till-1-receipt-43")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(addSalesDto)))
+                    .andExpect(status().isCreated())
+                    .andExpect(header().doesNotExist(IdempotencyFilter.REPLAYED_HEADER));
+            assertEquals(85, stockRepository.findByCode("ST001").orElseThrow().getQuantity());
+        } finally {
+            idempotencyRecordRepository.deleteAll();
+            salesRepository.deleteAll();
+            stockRepository.deleteAll();
+            userRepository.deleteAll();
+        }
+    }
+
+    @Test
+    void testIdempotencyKey_AbandonedReservationIsTakenOverAfterItsLease() {
+        UUID abandoned = idempotencyStore.reserve("abandoned-request", "request-hash");
+        assertNotNull(abandoned);
+        assertNull(idempotencyStore.reserve("abandoned-request", "request-hash"));
+        assertFalse(idempotencyStore.find("abandoned-request").completed());
+
+        // the request never finished and its lease ran out
+        IdempotencyRecord record = idempotencyRecordRepository.findById("abandoned-request").orElseThrow();
+        record.setExpiresAt(Instant.now().minusSeconds(1));
+        idempotencyRecordRepository.saveAndFlush(record);
+        assertNull(idempotencyStore.find("abandoned-request"));
+
+        UUID retry = idempotencyStore.reserve("abandoned-request", "request-hash");
+        assertNotNull(retry);
+
+        // should the first request still come back, it neither stores its response nor frees the retry's key
+        idempotencyStore.complete("abandoned-request", abandoned, 201, MediaType.APPLICATION_JSON_VALUE, "{\"late\":true}");
+        idempotencyStore.release("abandoned-request", abandoned);
+        assertFalse(idempotencyStore.find("abandoned-request").completed());
+
+        idempotencyStore.complete("abandoned-request", retry, 201, MediaType.APPLICATION_JSON_VALUE, "{}");
+        IdempotencyStore.StoredResponse stored = idempotencyStore.find("abandoned-request");
+        assertEquals(201, stored.status());
+        assertEquals("{}", stored.body());
+        assertTrue(stored.expiresAt().isAfter(Instant.now().plusSeconds(3600)));
+    }
+
+    private static SalesDto.AddSalesDto saleLine(String name, ContainerWeights weight, String containerName, int quantity) {
+        SalesDto.AddSalesDto line = new SalesDto.AddSalesDto();
+        line.setDate(LocalDate.now());
+        line.setName(name);
+        line.setQuantity(quantity);
+        line.setPrice(100.0);
+        line.setTotalPrice(100.0 * quantity);
+        line.setWeight(weight);
+        line.setContainerName(containerName);
+        return line;
+    }
+
     @Test
     @WithMockUser(authorities = "USER")
     void testAddSales_InvalidData() throws Exception {
@@ -144,6 +339,116 @@ public class SalesControllerTest {
                 .andExpect(jsonPath("$.data").isEmpty());
     }
 
+    @Test
+    @WithMockUser(authorities = "USER")
+    void testAddSales_UpdatesStockTotals() throws Exception {
+        mockMvc.perform(post("/api/v1/sales/add")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(addSalesDto)))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/api/v1/stock/75KG"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data").value(90));
+        mockMvc.perform(get("/api/v1/stock/total"))
+                .andExpect(jsonPath("$.data").value(90));
+    }
+
+    @Test
+    @WithMockUser(authorities = "USER")
+    void testAddSales_SellsOutStock() throws Exception {
+        addSalesDto.setQuantity(100);
+
+        mockMvc.perform(post("/api/v1/sales/add")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(addSalesDto)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.data.quantity").value(100));
+
+        // Verify the depleted stock row was removed
+        assertTrue(stockRepository.findByCode("ST001").isEmpty());
+    }
+
+    @Test
+    @WithMockUser(authorities = "USER")
+    void testAddSales_ProductNotFound() throws Exception {
+        addSalesDto.setName("Unknown Item");
+
+        mockMvc.perform(post("/api/v1/sales/add")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(addSalesDto)))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.data").isEmpty());
+
+        assertEquals(0, salesRepository.count());
+    }
+
+    @Test
+    @WithMockUser(authorities = "USER")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testAddSales_CommitsOnce() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        try {
+            statistics.clear();
+
+            mockMvc.perform(post("/api/v1/sales/add")
+                            .with(csrf())
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(addSalesDto)))
+                    .andExpect(status().isCreated());
+
+            // sale insert and stock decrement share a single commit
+            assertEquals(1, statistics.getSuccessfulTransactionCount());
+        } finally {
+            salesRepository.deleteAll();
+            stockRepository.deleteAll();
+            userRepository.deleteAll();
+        }
+    }
+
+    @Test
+    @WithMockUser(authorities = "USER")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testAddSales_HotItemsServedFromCache() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        try {
+            Stock other = new Stock("ST002", "Other Item", 40, "Container1");
+            other.setWeight(ContainerWeights.KG_45);
+            stockRepository.save(other);
+            String testKey = Stock.lookupKey("Test Item", ContainerWeights.KG_75, "Container1");
+            String otherKey = Stock.lookupKey("Other Item", ContainerWeights.KG_45, "Container1");
+            stockRepository.findByCode("ST001");
+            statistics.clear();
+
+            assertEquals("Test Item", stockRepository.findByCode("ST001").orElseThrow().getName());
+            assertEquals(100, stockRepository.findByLookupKey(testKey).orElseThrow().getQuantity());
+            assertEquals(40, stockRepository.findByLookupKey(otherKey).orElseThrow().getQuantity());
+            assertEquals(1, statistics.getQueryCacheHitCount());
+            assertEquals(0, statistics.getEntityStatistics(Stock.class.getName()).getLoadCount());
+
+            mockMvc.perform(post("/api/v1/sales/add")
+                            .with(csrf())
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(addSalesDto)))
+                    .andExpect(status().isCreated());
+
+            // the sale evicts the item it sold and nothing else
+            assertEquals(40, stockRepository.findByLookupKey(otherKey).orElseThrow().getQuantity());
+            assertEquals(0, statistics.getEntityStatistics(Stock.class.getName()).getLoadCount());
+            assertEquals(90, stockRepository.findByLookupKey(testKey).orElseThrow().getQuantity());
+            assertEquals(1, statistics.getEntityStatistics(Stock.class.getName()).getLoadCount());
+            mockMvc.perform(get("/api/v1/stock/75KG"))
+                    .andExpect(jsonPath("$.data").value(90));
+        } finally {
+            salesRepository.deleteAll();
+            stockRepository.deleteAll();
+            userRepository.deleteAll();
+        }
+    }
+
     @Test
     @WithMockUser(authorities = "USER")
     void testRecentSales_Success() throws Exception {
@@ -167,6 +472,59 @@ public class SalesControllerTest {
                 .andExpect(jsonPath("$.data.length()").value(2));
     }
 
+    @Test
+    @WithMockUser(authorities = "USER")
+    void testRecentSales_NotModified() throws Exception {
+        salesService.addSales(addSalesDto);
+
+        String etag = mockMvc.perform(get("/api/v1/sales/recent"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+
+        mockMvc.perform(get("/api/v1/sales/recent").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    @WithMockUser(authorities = "USER")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testRecentSales_ServedFromMemoryInCreationOrder() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        try {
+            var first = salesService.addSales(addSalesDto);
+            // recorded later for an earlier date, still the most recent sale
+            addSalesDto.setDate(LocalDate.now().minusDays(3));
+            addSalesDto.setQuantity(5);
+            var second = salesService.addSales(addSalesDto);
+            statistics.clear();
+
+            mockMvc.perform(get("/api/v1/sales/recent"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.data.length()").value(2))
+                    .andExpect(jsonPath("$.data[0].id").value(second.getId().toString()))
+                    .andExpect(jsonPath("$.data[0].createdAt").exists())
+                    .andExpect(jsonPath("$.data[1].id").value(first.getId().toString()));
+            assertEquals(0, statistics.getQueryExecutionCount());
+
+            SalesDto.UpdateSalesDto update = new SalesDto.UpdateSalesDto();
+            update.setQuantity(12);
+            salesService.updateSale(first.getId(), update);
+            salesService.deleteSales(second.getId());
+
+            mockMvc.perform(get("/api/v1/sales/recent"))
+                    .andExpect(jsonPath("$.data.length()").value(1))
+                    .andExpect(jsonPath("$.data[0].id").value(first.getId().toString()))
+                    .andExpect(jsonPath("$.data[0].quantity").value(12));
+        } finally {
+            salesRepository.deleteAll();
+            stockRepository.deleteAll();
+            userRepository.deleteAll();
+        }
+        mockMvc.perform(get("/api/v1/sales/recent"))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     @WithMockUser(authorities = "USER")
     void testViewAllSales_Success() throws Exception {
@@ -201,6 +559,109 @@ public class SalesControllerTest {
                 .andExpect(jsonPath("$.data.content").isArray());
     }
 
+    @Test
+    @WithMockUser(authorities = "USER")
+    void testViewAllSales_ByCursor() throws Exception {
+        // several sales on the same day, which offset pages ordered by date alone could repeat or skip
+        for (int i = 0; i < 5; i++) {
+            salesRepository.save(new Sales(LocalDate.now(), "ST001", "Test Item", "Container1", 1, 100.0, 100.0, ContainerWeights.KG_75));
+        }
+        salesRepository.save(new Sales(LocalDate.now().minusDays(3), "ST001", "Test Item", "Container1", 1, 100.0, 100.0, ContainerWeights.KG_75));
+
+        List<String> ids = new ArrayList<>();
+        List<String> dates = new ArrayList<>();
+        String cursor = "";
+        int pages = 0;
+        do {
+            var result = mockMvc.perform(get("/api/v1/sales/all")
+                            .param("cursor", cursor)
+                            .param("size", "2"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.message").value("All Sales in the Database"))
+                    .andReturn();
+            JsonNode page = objectMapper.readTree(result.getResponse().getContentAsString()).get("data");
+            page.get("content").forEach(sale -> {
+                ids.add(sale.get("id").asText());
+                dates.add(sale.get("date").asText());
+            });
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(6, ids.size());
+        assertEquals(6, new HashSet<>(ids).size());
+        assertEquals(LocalDate.now().minusDays(3).toString(), dates.getLast());
+    }
+
+    @Test
+    @WithMockUser(authorities = "USER")
+    void testSalesFilter_ByCursor() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            salesRepository.save(new Sales(LocalDate.now(), "ST001", "Test Item", "Container1", 1, 100.0, 100.0, ContainerWeights.KG_75));
+        }
+        salesRepository.save(new Sales(LocalDate.now().minusDays(10), "ST001", "Test Item", "Container1", 1, 100.0, 100.0, ContainerWeights.KG_75));
+
+        SalesDto.SalesDateDto salesDateDto = new SalesDto.SalesDateDto();
+        salesDateDto.setStartDate(LocalDate.now().minusDays(1));
+        salesDateDto.setSize(2);
+
+        var first = mockMvc.perform(post("/api/v1/sales/filter")
+                        .param("cursor", "")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(salesDateDto)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").value("Filtered sales"))
+                .andExpect(jsonPath("$.data.content.length()").value(2))
+                .andExpect(jsonPath("$.data.hasNext").value(true))
+                .andReturn();
+        String cursor = objectMapper.readTree(first.getResponse().getContentAsString()).at("/data/nextCursor").asText();
+
+        mockMvc.perform(post("/api/v1/sales/filter")
+                        .param("cursor", cursor)
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(salesDateDto)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.content.length()").value(1))
+                .andExpect(jsonPath("$.data.hasNext").value(false))
+                .andExpect(jsonPath("$.data.nextCursor").doesNotExist());
+    }
+
+    @Test
+    @WithMockUser(authorities = "USER")
+    void testViewAllSales_Slice() throws Exception {
+        salesService.addSales(addSalesDto);
+
+        mockMvc.perform(get("/api/v1/sales/all")
+                        .param("slice", "true")
+                        .param("size", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.content.length()").value(1))
+                .andExpect(jsonPath("$.data.hasNext").value(false))
+                .andExpect(jsonPath("$.data.totalElements").doesNotExist());
+
+        SalesDto.SalesDateDto salesDateDto = new SalesDto.SalesDateDto();
+        salesDateDto.setStartDate(LocalDate.now().plusDays(1));
+
+        mockMvc.perform(post("/api/v1/sales/filter")
+                        .param("slice", "true")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(salesDateDto)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @WithMockUser(authorities = "USER")
+    void testViewAllSales_InvalidCursor() throws Exception {
+        mockMvc.perform(get("/api/v1/sales/all")
+                        .param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Invalid cursor, start again without one."));
+    }
+
     @Test
     @WithMockUser(authorities = "USER")
     void testGetArticleName_Success() throws Exception {
@@ -220,6 +681,72 @@ public class SalesControllerTest {
                 .andExpect(jsonPath("$.data").isEmpty());
     }
 
+    @Test
+    @WithMockUser(authorities = "USER")
+    void testFindArticles_ByCodeOrName() throws Exception {
+        mockMvc.perform(get("/api/v1/sales/article").param("code", " st001 "))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.length()").value(1))
+                .andExpect(jsonPath("$.data[0].item_name").value("Test Item"))
+                .andExpect(jsonPath("$.data[0].quantity").value(100));
+        mockMvc.perform(get("/api/v1/sales/article").param("name", "TEST ITEM"))
+                .andExpect(jsonPath("$.data[0].item_code").value("ST001"));
+        mockMvc.perform(get("/api/v1/sales/article").param("code", "NONEXISTENT"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.length()").value(0));
+        mockMvc.perform(get("/api/v1/sales/article"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(authorities = "USER")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testFindArticles_AnsweredFromIndex() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        try {
+            mockMvc.perform(get("/api/v1/sales/article").param("code", "ST001"))
+                    .andExpect(jsonPath("$.data[0].quantity").value(100));
+            statistics.clear();
+
+            // known and unknown codes alike are answered from memory
+            mockMvc.perform(get("/api/v1/sales/article/name").param("articleCode", "ST001"))
+                    .andExpect(jsonPath("$.data").value("Test Item"));
+            mockMvc.perform(get("/api/v1/sales/article/name").param("articleCode", "NONEXISTENT"))
+                    .andExpect(status().isNotFound());
+            assertEquals(0, statistics.getQueryExecutionCount());
+            assertEquals(0, statistics.getEntityLoadCount());
+
+            // committed sales and restocks show up on the next lookup
+            mockMvc.perform(post("/api/v1/sales/add")
+                            .with(csrf())
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(addSalesDto)))
+                    .andExpect(status().isCreated());
+            statistics.clear();
+            mockMvc.perform(get("/api/v1/sales/article").param("code", "ST001"))
+                    .andExpect(jsonPath("$.data[0].quantity").value(90));
+            // the sale put its result into the index when it committed, the lookup reads nothing back
+            assertEquals(0, statistics.getQueryExecutionCount());
+            assertEquals(0, statistics.getEntityLoadCount());
+
+            Stock other = new Stock("ST001", "Other Item", 40, "Container2");
+            other.setWeight(ContainerWeights.KG_45);
+            stockRepository.save(other);
+            mockMvc.perform(get("/api/v1/sales/article").param("code", "ST001"))
+                    .andExpect(jsonPath("$.data.length()").value(2));
+            mockMvc.perform(get("/api/v1/sales/article/name").param("articleCode", "ST001"))
+                    .andExpect(status().isConflict());
+
+            stockRepository.delete(other);
+            mockMvc.perform(get("/api/v1/sales/article/name").param("articleCode", "ST001"))
+                    .andExpect(jsonPath("$.data").value("Test Item"));
+        } finally {
+            salesRepository.deleteAll();
+            stockRepository.deleteAll();
+            userRepository.deleteAll();
+        }
+    }
+
     @Test
     @WithMockUser(authorities = "ADMIN")
     void testDeleteSales_Success() throws Exception {
@@ -1,31 +1,51 @@
 package com.example.stockmanager.controllers;
 
+import com.example.stockmanager.configurations.IdempotencyFilter;
 import com.example.stockmanager.dtos.StockDto;
 import com.example.stockmanager.entities.ContainerWeights;
 import com.example.stockmanager.entities.Role;
 import com.example.stockmanager.entities.Stock;
 import com.example.stockmanager.entities.Users;
+import com.example.stockmanager.entities.StockTotal;
 import com.example.stockmanager.repositories.StockRepository;
+import com.example.stockmanager.repositories.StockTotalRepository;
 import com.example.stockmanager.repositories.UserRepository;
+import com.example.stockmanager.services.Impl.StockTotalsReconciler;
+import com.example.stockmanager.services.StockServices;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.apache.poi.ss.usermodel.*;
+import com.fasterxml.jackson.databind.JsonNode;
 import java.io.ByteArrayOutputStream;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
@@ -53,6 +73,21 @@ public class StockControllerTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private StockTotalRepository stockTotalRepository;
+
+    @Autowired
+    private StockTotalsReconciler stockTotalsReconciler;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private StockServices stockService;
+
     private Stock testStock75;
     private StockDto.AddStockDto addStockDto;
     private StockDto.UpdateStockDto updateStockDto;
@@ -121,6 +156,204 @@ public class StockControllerTest {
                 .andExpect(jsonPath("$.data").value(100));
     }
 
+    @Test
+    @WithMockUser(authorities = "ADMIN")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testStockTotals_FollowCommittedChanges() throws Exception {
+        try {
+            mockMvc.perform(post("/api/v1/stock/add/stock")
+                            .with(csrf())
+                            .param("weight", "KG_75")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(addStockDto)))
+                    .andExpect(status().isCreated());
+
+            StockDto.UpdateStockDto moveToBags = new StockDto.UpdateStockDto();
+            moveToBags.setQuantity(60);
+            moveToBags.setWeight(ContainerWeights.BAGS);
+            mockMvc.perform(patch("/api/v1/stock/{id}", testStock75.getId())
+                            .with(csrf())
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(moveToBags)))
+                    .andExpect(status().isOk());
+
+            UUID stock45Id = stockRepository.findByCode("ST002").orElseThrow().getId();
+            mockMvc.perform(delete("/api/v1/stock/{id}", stock45Id)
+                            .with(csrf()))
+                    .andExpect(status().isOk());
+
+            mockMvc.perform(get("/api/v1/stock/75KG"))
+                    .andExpect(jsonPath("$.data").value(25));
+            mockMvc.perform(get("/api/v1/stock/45KG"))
+                    .andExpect(jsonPath("$.data").value(0));
+            mockMvc.perform(get("/api/v1/stock/bags"))
+                    .andExpect(jsonPath("$.data").value(90));
+            mockMvc.perform(get("/api/v1/stock/total"))
+                    .andExpect(jsonPath("$.data").value(115));
+
+            assertEquals(25, stockTotalRepository.findById(ContainerWeights.KG_75).orElseThrow().getQuantity());
+            assertEquals(0, stockTotalRepository.findById(ContainerWeights.KG_45).orElseThrow().getQuantity());
+            assertEquals(90, stockTotalRepository.findById(ContainerWeights.BAGS).orElseThrow().getQuantity());
+        } finally {
+            stockRepository.deleteAll();
+            userRepository.deleteAll();
+        }
+    }
+
+    @Test
+    @WithMockUser(authorities = "ADMIN")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testViewStock_NotModifiedUntilStockChanges() throws Exception {
+        try {
+            String etag = mockMvc.perform(get("/api/v1/stock/view/stock").param("page", "0").param("size", "10"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().exists(HttpHeaders.ETAG))
+                    .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+            Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+            statistics.clear();
+            mockMvc.perform(get("/api/v1/stock/view/stock").param("page", "0").param("size", "10")
+                            .header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isNotModified())
+                    .andExpect(content().string(""));
+            assertEquals(0, statistics.getQueryExecutionCount());
+
+            // another filter of the same data is a different representation
+            mockMvc.perform(get("/api/v1/stock/view/stock").param("page", "0").param("size", "10").param("weight", "KG_75")
+                            .header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isOk());
+
+            mockMvc.perform(post("/api/v1/stock/add/stock")
+                            .with(csrf())
+                            .param("weight", "KG_75")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(addStockDto)))
+                    .andExpect(status().isCreated());
+
+            String changed = mockMvc.perform(get("/api/v1/stock/view/stock").param("page", "0").param("size", "10")
+                            .header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.data.content.length()").value(4))
+                    .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+            assertNotEquals(etag, changed);
+
+            mockMvc.perform(get("/api/v1/stock/total").header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.data").value(205));
+        } finally {
+            stockRepository.deleteAll();
+            userRepository.deleteAll();
+        }
+    }
+
+    @Test
+    @WithMockUser(authorities = "USER")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testStockTotals_ReconciliationCorrectsDrift() throws Exception {
+        try {
+            // a write behind the application's back leaves both the table and the in-memory counters behind
+            jdbcTemplate.update("UPDATE stock SET quantity = 130 WHERE code = 'ST001'");
+            stockTotalRepository.save(new StockTotal(ContainerWeights.KG_45, 999));
+
+            stockTotalsReconciler.reconcile();
+            assertEquals(130, stockTotalRepository.findById(ContainerWeights.KG_75).orElseThrow().getQuantity());
+            assertEquals(50, stockTotalRepository.findById(ContainerWeights.KG_45).orElseThrow().getQuantity());
+            mockMvc.perform(get("/api/v1/stock/75KG"))
+                    .andExpect(jsonPath("$.data").value(100));
+
+            // the in-memory counter is only corrected once the same drift is seen twice in a row
+            stockTotalsReconciler.reconcile();
+            mockMvc.perform(get("/api/v1/stock/75KG"))
+                    .andExpect(jsonPath("$.data").value(130));
+            mockMvc.perform(get("/api/v1/stock/total"))
+                    .andExpect(jsonPath("$.data").value(210));
+        } finally {
+            stockRepository.deleteAll();
+            userRepository.deleteAll();
+            stockTotalsReconciler.reconcile();
+            stockTotalsReconciler.reconcile();
+        }
+    }
+
+    @Test
+    @WithMockUser(authorities = "USER")
+    void testViewStock_Slice() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        mockMvc.perform(get("/api/v1/stock/view/stock")
+                        .param("slice", "true")
+                        .param("page", "0")
+                        .param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").value("This is the current stock"))
+                .andExpect(jsonPath("$.data.content.length()").value(2))
+                .andExpect(jsonPath("$.data.hasNext").value(true))
+                .andExpect(jsonPath("$.data.totalElements").doesNotExist())
+                // planner estimates are PostgreSQL only
+                .andExpect(jsonPath("$.data.estimatedTotal").doesNotExist());
+
+        // the page query only, no COUNT, selected straight into DTOs without loading entities
+        assertEquals(1, statistics.getQueryExecutionCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+
+        mockMvc.perform(get("/api/v1/stock/view/stock")
+                        .param("slice", "true")
+                        .param("page", "1")
+                        .param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.content.length()").value(1))
+                .andExpect(jsonPath("$.data.hasNext").value(false));
+    }
+
+    @Test
+    @WithMockUser(authorities = "USER")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testSearchStock_PrefixAndTypos() throws Exception {
+        try {
+            Stock sugar = new Stock("SG100", "Brown Sugar", 20, "Container1");
+            sugar.setWeight(ContainerWeights.BAGS);
+            stockRepository.save(sugar);
+
+            // prefix of the name, a typo in it, and words from code, name and container together
+            mockMvc.perform(get("/api/v1/stock/search").param("q", "sug"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.message").value("These are the matching stock items"))
+                    .andExpect(jsonPath("$.data.length()").value(1))
+                    .andExpect(jsonPath("$.data[0].item_code").value("SG100"));
+            mockMvc.perform(get("/api/v1/stock/search").param("q", "suger"))
+                    .andExpect(jsonPath("$.data.length()").value(1))
+                    .andExpect(jsonPath("$.data[0].item_name").value("Brown Sugar"));
+            mockMvc.perform(get("/api/v1/stock/search").param("q", "item bags"))
+                    .andExpect(jsonPath("$.data.length()").value(1))
+                    .andExpect(jsonPath("$.data[0].item_code").value("ST003"));
+            mockMvc.perform(get("/api/v1/stock/search").param("q", "container1 st001"))
+                    .andExpect(jsonPath("$.data.length()").value(1))
+                    .andExpect(jsonPath("$.data[0].item_code").value("ST001"));
+
+            // the exact word ranks above the word it is a prefix of
+            Stock bag = new Stock("BG1", "Bag", 5, "Container9");
+            bag.setWeight(ContainerWeights.BAGS);
+            stockRepository.save(bag);
+            mockMvc.perform(get("/api/v1/stock/search").param("q", "bag"))
+                    .andExpect(jsonPath("$.data.length()").value(2))
+                    .andExpect(jsonPath("$.data[0].item_code").value("BG1"))
+                    .andExpect(jsonPath("$.data[1].item_code").value("ST003"));
+
+            mockMvc.perform(get("/api/v1/stock/search").param("q", "test").param("limit", "2"))
+                    .andExpect(jsonPath("$.data.length()").value(2));
+            mockMvc.perform(get("/api/v1/stock/search").param("q", "xylophone"))
+                    .andExpect(jsonPath("$.data.length()").value(0));
+            mockMvc.perform(get("/api/v1/stock/search").param("q", " "))
+                    .andExpect(status().isBadRequest());
+            mockMvc.perform(get("/api/v1/stock/search").param("q", "test").param("limit", "0"))
+                    .andExpect(status().isBadRequest());
+        } finally {
+            stockRepository.deleteAll();
+            userRepository.deleteAll();
+        }
+    }
+
     @Test
     @WithMockUser(authorities = "USER")
     void testView45Stock_Success() throws Exception {
@@ -238,6 +471,104 @@ public class StockControllerTest {
         assertEquals(initialQuantity + 50, updatedStock.getQuantity());
     }
 
+    @Test
+    @WithMockUser(authorities = "ADMIN")
+    void testAddStock_IdempotencyKeyAddsOnce() throws Exception {
+        StockDto.AddStockDto addToExisting = new StockDto.AddStockDto();
+        addToExisting.setItem_code("ST001");
+        addToExisting.setItem_name("Test Item 75KG");
+        addToExisting.setQuantity(50);
+        addToExisting.setContainer_name("Container1");
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            mockMvc.perform(post("/api/v1/stock/add/stock")
+                            .with(csrf())
+                            .header(IdempotencyFilter.KEY_HEADER, "delivery-2024-117")
+                            .param("weight", "KG_75")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(addToExisting)))
+                    .andExpect(status().isCreated())
+                    .andExpect(jsonPath("$.data.quantity").value(150));
+        }
+
+        // the same key on another weight is a different request
+        mockMvc.perform(post("/api/v1/stock/add/stock")
+                        .with(csrf())
+                        .header(IdempotencyFilter.KEY_HEADER, "delivery-2024-117")
+                        .param("weight", "KG_45")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(addToExisting)))
+                .andExpect(status().isUnprocessableEntity());
+
+        stockRepository.flush();
+        assertEquals(150, stockRepository.findByCode("ST001").orElseThrow().getQuantity());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testAddStock_ConcurrentFirstRestocksAllCount() throws Exception {
+        int restocks = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(restocks);
+        try {
+            // all of them find no line to add to, one inserts it and the others add to that row
+            CyclicBarrier start = new CyclicBarrier(restocks);
+            List<Future<StockDto.ViewStockDto>> results = new ArrayList<>();
+            for (int i = 0; i < restocks; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return stockService.addStock(addStockDto, ContainerWeights.KG_45);
+                }));
+            }
+            for (Future<StockDto.ViewStockDto> result : results) {
+                assertNotNull(result.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(restocks * 25, stockRepository.findByCode("ST004").orElseThrow().getQuantity());
+        } finally {
+            executor.shutdownNow();
+            stockRepository.deleteAll();
+            userRepository.deleteAll();
+        }
+    }
+
+    @Test
+    @WithMockUser(authorities = "ADMIN")
+    void testAddStock_MatchesExistingStockIgnoringCaseAndSpaces() throws Exception {
+        StockDto.AddStockDto addToExisting = new StockDto.AddStockDto();
+        addToExisting.setItem_code("ST001");
+        addToExisting.setItem_name("  test item 75kg ");
+        addToExisting.setQuantity(5);
+        addToExisting.setContainer_name("CONTAINER1");
+
+        mockMvc.perform(post("/api/v1/stock/add/stock")
+                        .with(csrf())
+                        .param("weight", "KG_75")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(addToExisting)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.data.id").value(testStock75.getId().toString()))
+                .andExpect(jsonPath("$.data.quantity").value(105));
+
+        assertEquals(3, stockRepository.count());
+    }
+
+    @Test
+    @WithMockUser(authorities = "ADMIN")
+    void testUpdateStock_DuplicateLookupKey() throws Exception {
+        UUID stockId = testStock75.getId();
+
+        // renaming onto another item's name, weight and container would create a duplicate row
+        StockDto.UpdateStockDto clash = new StockDto.UpdateStockDto();
+        clash.setItem_name("Test Item 45KG");
+        clash.setContainer_name("Container2");
+        clash.setWeight(ContainerWeights.KG_45);
+
+        mockMvc.perform(patch("/api/v1/stock/{id}", stockId)
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(clash)))
+                .andExpect(status().isConflict());
+    }
+
     @Test
     @WithMockUser(authorities = "USER")
     void testAddStock_Unauthorized() throws Exception {
@@ -337,6 +668,61 @@ public class StockControllerTest {
         }
     }
 
+    @Test
+    @WithMockUser(authorities = "ADMIN")
+    void testUploadStockFile_MergesDuplicateRowsAndExistingStock() throws Exception {
+        MockMultipartFile file = excelFile(
+                new Object[]{"code", "name", "quantity", "container_name", "weight"},
+                new Object[]{"ST001", "Test Item 75KG", 5, "Container1", "KG_75"},
+                new Object[]{null, "Fresh Item", 7, "Excel Container", "bags"},
+                new Object[]{null, null, null, null, null},
+                new Object[]{"FR001", "fresh item ", "3", "EXCEL CONTAINER", "BAGS"}
+        );
+
+        mockMvc.perform(multipart("/api/v1/stock/upload/stock/file")
+                        .file(file)
+                        .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data").value(2));
+
+        stockRepository.flush();
+        assertEquals(105, stockRepository.findByCode("ST001").orElseThrow().getQuantity());
+        Stock fresh = stockRepository.findByCode("FR001").orElseThrow();
+        assertEquals(10, fresh.getQuantity());
+        assertEquals(ContainerWeights.BAGS, fresh.getWeight());
+    }
+
+    @Test
+    @WithMockUser(authorities = "ADMIN")
+    void testUploadStockFile_RejectsRowWithMissingQuantity() throws Exception {
+        MockMultipartFile file = excelFile(
+                new Object[]{"code", "name", "quantity", "container_name", "weight"},
+                new Object[]{"EX001", "Excel Item 1", 10, "Excel Container", "KG_75"},
+                new Object[]{"EX002", "Excel Item 2", null, "Excel Container", "KG_45"}
+        );
+
+        mockMvc.perform(multipart("/api/v1/stock/upload/stock/file")
+                        .file(file)
+                        .with(csrf()))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Row 3: quantity is missing."));
+    }
+
+    @Test
+    @WithMockUser(authorities = "ADMIN")
+    void testUploadStockFile_MissingHeaders() throws Exception {
+        MockMultipartFile file = excelFile(
+                new Object[]{"code", "name", "quantity"},
+                new Object[]{"EX001", "Excel Item 1", 10}
+        );
+
+        mockMvc.perform(multipart("/api/v1/stock/upload/stock/file")
+                        .file(file)
+                        .with(csrf()))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Excel file must contain the columns: [code, name, quantity, container_name, weight]"));
+    }
+
     @Test
     @WithMockUser(authorities = "USER")
     void testUploadStockFile_Unauthorized() throws Exception {
@@ -353,6 +739,114 @@ public class StockControllerTest {
                 .andExpect(status().isForbidden());
     }
 
+    @Test
+    @WithMockUser(authorities = "ADMIN")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testImportStockFile_CompletesInBackground() throws Exception {
+        try {
+            MockMultipartFile file = excelFile(
+                    new Object[]{"code", "name", "quantity", "container_name", "weight"},
+                    new Object[]{"ST001", "Test Item 75KG", 5, "Container1", "KG_75"},
+                    new Object[]{"IM001", "Imported Item", 12, "Import Container", "KG_45"}
+            );
+
+            MvcResult accepted = mockMvc.perform(multipart("/api/v1/stock/import")
+                            .file(file)
+                            .with(csrf()))
+                    .andExpect(status().isAccepted())
+                    .andExpect(jsonPath("$.message").value("Stock import accepted"))
+                    .andExpect(jsonPath("$.data.id").exists())
+                    .andReturn();
+            String jobId = objectMapper.readTree(accepted.getResponse().getContentAsString()).at("/data/id").asText();
+
+            JsonNode job = awaitImportJob(jobId);
+            assertEquals("COMPLETED", job.get("status").asText());
+            assertEquals(2, job.get("rowsParsed").asInt());
+            assertEquals(2, job.get("rowsApplied").asInt());
+            assertEquals(2, job.get("processedItems").asInt());
+
+            assertEquals(105, stockRepository.findByCode("ST001").orElseThrow().getQuantity());
+            assertEquals(12, stockRepository.findByCode("IM001").orElseThrow().getQuantity());
+        } finally {
+            stockRepository.deleteAll();
+            userRepository.deleteAll();
+        }
+    }
+
+    @Test
+    @WithMockUser(authorities = "ADMIN")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testImportStockFile_ReportsRowErrors() throws Exception {
+        try {
+            MockMultipartFile file = excelFile(
+                    new Object[]{"code", "name", "quantity", "container_name", "weight"},
+                    new Object[]{"IM001", "Imported Item", 12, "Import Container", "KG_10"}
+            );
+
+            MvcResult accepted = mockMvc.perform(multipart("/api/v1/stock/import")
+                            .file(file)
+                            .with(csrf()))
+                    .andExpect(status().isAccepted())
+                    .andReturn();
+            String jobId = objectMapper.readTree(accepted.getResponse().getContentAsString()).at("/data/id").asText();
+
+            JsonNode job = awaitImportJob(jobId);
+            assertEquals("FAILED", job.get("status").asText());
+            assertEquals("Row 2: weight must be one of [KG_45, KG_75, BAGS]", job.get("errors").get(0).asText());
+            assertTrue(stockRepository.findByCode("IM001").isEmpty());
+        } finally {
+            stockRepository.deleteAll();
+            userRepository.deleteAll();
+        }
+    }
+
+    @Test
+    @WithMockUser(authorities = "ADMIN")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testImportStockFile_KeepsChunksCommittedBeforeAFailure() throws Exception {
+        try {
+            // a full first chunk of 500 rows, then a second one with an invalid row
+            Object[][] rows = new Object[502][];
+            rows[0] = new Object[]{"code", "name", "quantity", "container_name", "weight"};
+            for (int i = 1; i <= 500; i++) {
+                rows[i] = new Object[]{"IM" + i, "Imported Item " + i, 1, "Import Container", "KG_45"};
+            }
+            rows[501] = new Object[]{"IM501", "Imported Item 501", 1, "Import Container", "KG_10"};
+
+            MvcResult accepted = mockMvc.perform(multipart("/api/v1/stock/import")
+                            .file(excelFile(rows))
+                            .with(csrf()))
+                    .andExpect(status().isAccepted())
+                    .andReturn();
+            String jobId = objectMapper.readTree(accepted.getResponse().getContentAsString()).at("/data/id").asText();
+
+            JsonNode job = awaitImportJob(jobId);
+            assertEquals("FAILED", job.get("status").asText());
+            assertEquals(500, job.get("rowsApplied").asInt());
+            assertEquals("Row 502: weight must be one of [KG_45, KG_75, BAGS]", job.get("errors").get(0).asText());
+            assertTrue(stockRepository.findByCode("IM500").isPresent());
+        } finally {
+            stockRepository.deleteAll();
+            userRepository.deleteAll();
+        }
+    }
+
+    @Test
+    @WithMockUser(authorities = "ADMIN")
+    void testImportJob_NotFound() throws Exception {
+        mockMvc.perform(get("/api/v1/stock/import/{jobId}", UUID.randomUUID()))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @WithMockUser(authorities = "USER")
+    void testImportStockFile_Unauthorized() throws Exception {
+        mockMvc.perform(multipart("/api/v1/stock/import")
+                        .file(excelFile(new Object[]{"code", "name", "quantity", "container_name", "weight"}))
+                        .with(csrf()))
+                .andExpect(status().isForbidden());
+    }
+
     @Test
     @WithMockUser(authorities = "ADMIN")
     void testUpdateStock_Success() throws Exception {
@@ -476,4 +970,44 @@ public class StockControllerTest {
                         .with(csrf()))
                 .andExpect(status().isForbidden());
     }
+
+    private MockMultipartFile excelFile(Object[]... rows) throws Exception {
+        try (XSSFWorkbook workbook = new XSSFWorkbook();
+             ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
+            Sheet sheet = workbook.createSheet("Stock");
+            for (int r = 0; r < rows.length; r++) {
+                Row row = sheet.createRow(r);
+                for (int c = 0; c < rows[r].length; c++) {
+                    Object value = rows[r][c];
+                    if (value instanceof Number number) {
+                        row.createCell(c).setCellValue(number.doubleValue());
+                    } else if (value != null) {
+                        row.createCell(c).setCellValue(value.toString());
+                    }
+                }
+            }
+            workbook.write(outputStream);
+            return new MockMultipartFile(
+                    "file",
+                    "test.xlsx",
+                    "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet",
+                    outputStream.toByteArray()
+            );
+        }
+    }
+
+    private JsonNode awaitImportJob(String jobId) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (true) {
+            MvcResult result = mockMvc.perform(get("/api/v1/stock/import/{jobId}", jobId))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            JsonNode job = objectMapper.readTree(result.getResponse().getContentAsString()).get("data");
+            String status = job.get("status").asText();
+            if (status.equals("COMPLETED") || status.equals("FAILED") || System.currentTimeMillis() > deadline) {
+                return job;
+            }
+            Thread.sleep(50);
+        }
+    }
 }
@@ -0,0 +1,123 @@
+package com.example.stockmanager.controllers;
+
+import com.example.stockmanager.dtos.SalesDto;
+import com.example.stockmanager.entities.ContainerWeights;
+import com.example.stockmanager.entities.Stock;
+import com.example.stockmanager.exceptions.InsufficientStockException;
+import com.example.stockmanager.repositories.SalesRepository;
+import com.example.stockmanager.repositories.StockRepository;
+import com.example.stockmanager.services.SalesServices;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// not @Transactional: events are only pushed once the change has committed
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class StreamControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SalesServices salesService;
+
+    @Autowired
+    private SalesRepository salesRepository;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    private SalesDto.AddSalesDto addSalesDto;
+
+    @BeforeEach
+    void setUp() {
+        salesRepository.deleteAll();
+        stockRepository.deleteAll();
+
+        Stock stock = new Stock("LV001", "Live Item", 40, "Live Container");
+        stock.setWeight(ContainerWeights.KG_45);
+        stockRepository.save(stock);
+
+        addSalesDto = new SalesDto.AddSalesDto();
+        addSalesDto.setDate(LocalDate.now());
+        addSalesDto.setCode("LV001");
+        addSalesDto.setName("Live Item");
+        addSalesDto.setQuantity(4);
+        addSalesDto.setPrice(10.0);
+        addSalesDto.setTotalPrice(40.0);
+        addSalesDto.setWeight(ContainerWeights.KG_45);
+        addSalesDto.setContainerName("Live Container");
+    }
+
+    @AfterEach
+    void tearDown() {
+        salesRepository.deleteAll();
+        stockRepository.deleteAll();
+    }
+
+    @Test
+    @WithMockUser(authorities = "USER")
+    void testStream_PushesCommittedSalesAndTotals() throws Exception {
+        MvcResult stream = mockMvc.perform(get("/api/v1/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        salesService.addSales(addSalesDto);
+
+        String events = awaitContent(stream.getResponse(), "event:TOTALS");
+        assertTrue(events.contains("event:SALE_RECORDED"));
+        assertTrue(events.contains("\"quantity\":4"));
+        assertTrue(events.indexOf("event:SALE_RECORDED") < events.indexOf("event:TOTALS"));
+    }
+
+    @Test
+    @WithMockUser(authorities = "USER")
+    void testStream_RolledBackChangeIsNotPushed() throws Exception {
+        MvcResult stream = mockMvc.perform(get("/api/v1/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        addSalesDto.setQuantity(400);
+        assertThrows(InsufficientStockException.class, () -> salesService.addSales(addSalesDto));
+        addSalesDto.setQuantity(1);
+        salesService.addSales(addSalesDto);
+
+        String events = awaitContent(stream.getResponse(), "event:TOTALS");
+        assertFalse(events.contains("\"quantity\":400"));
+        assertTrue(events.contains("\"quantity\":1"));
+    }
+
+    @Test
+    void testStream_Unauthorized() throws Exception {
+        mockMvc.perform(get("/api/v1/stream"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    private String awaitContent(MockHttpServletResponse response, String expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        String content = response.getContentAsString();
+        while (!content.contains(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            content = response.getContentAsString();
+        }
+        assertTrue(content.contains(expected), "stream did not receive " + expected + ": " + content);
+        return content;
+    }
+}
@@ -2,9 +2,13 @@ package com.example.stockmanager.controllers;
 
 import com.example.stockmanager.configurations.TestMailConfig;
 import com.example.stockmanager.dtos.UserDto;
+import com.example.stockmanager.entities.MailStatus;
+import com.example.stockmanager.entities.OutboundMail;
 import com.example.stockmanager.entities.Role;
 import com.example.stockmanager.entities.Users;
+import com.example.stockmanager.repositories.OutboundMailRepository;
 import com.example.stockmanager.repositories.UserRepository;
+import com.example.stockmanager.services.Impl.MailDispatcher;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,15 +17,21 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -45,6 +55,15 @@ public class UserControllerTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private OutboundMailRepository outboundMailRepository;
+
+    @Autowired
+    private MailDispatcher mailDispatcher;
+
+    @Autowired
+    private JavaMailSenderImpl mailSender;
+
     private Users testUser;
     private UserDto.SignupDto signupDto;
     private UserDto.UpdateUserDto updateUserDto;
@@ -109,6 +128,50 @@ public class UserControllerTest {
         assertNotNull(createdUser.getPassword());
     }
 
+    @Test
+    @WithMockUser(authorities = "ADMIN")
+    void testUserRegistration_QueuesWelcomeMail() throws Exception {
+        mockMvc.perform(post("/api/v1/users/user/registration")
+                        .with(csrf())
+                        .param("role", "USER")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(signupDto)))
+                .andExpect(status().isCreated());
+
+        // nothing goes out during the request, the mail waits in the outbox
+        verify(mailSender, never()).send(any(SimpleMailMessage[].class));
+        OutboundMail queued = queuedMailTo("test.user@example.com");
+        assertEquals(MailStatus.PENDING, queued.getStatus());
+        assertEquals("Welcome to DALYDA", queued.getSubject());
+
+        assertTrue(mailDispatcher.dispatch() >= 1);
+        verify(mailSender).send(any(SimpleMailMessage[].class));
+        assertEquals(MailStatus.SENT, outboundMailRepository.findById(queued.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    @WithMockUser(authorities = "ADMIN")
+    void testUserRegistration_MailRetriedWhenSmtpFails() throws Exception {
+        doThrow(new MailSendException("Connection refused")).when(mailSender).send(any(SimpleMailMessage[].class));
+        try {
+            mockMvc.perform(post("/api/v1/users/user/registration")
+                            .with(csrf())
+                            .param("role", "USER")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(signupDto)))
+                    .andExpect(status().isCreated());
+
+            assertEquals(0, mailDispatcher.dispatch());
+            OutboundMail mail = queuedMailTo("test.user@example.com");
+            assertEquals(MailStatus.PENDING, mail.getStatus());
+            assertEquals(1, mail.getAttempts());
+            assertEquals("Connection refused", mail.getLastError());
+            assertTrue(mail.getNextAttemptAt().isAfter(Instant.now()));
+        } finally {
+            reset(mailSender);
+        }
+    }
+
     @Test
     @WithMockUser(authorities = "ADMIN")
     void testUserRegistration_WithAdminRole() throws Exception {
@@ -331,7 +394,21 @@ public class UserControllerTest {
                 .andExpect(jsonPath("$.data.content").isArray())
                 .andExpect(jsonPath("$.data.content.length()").value(2))
                 .andExpect(jsonPath("$.data.content[0].id").exists())
-                .andExpect(jsonPath("$.data.content[0].email").exists());
+                .andExpect(jsonPath("$.data.content[0].email").exists())
+                .andExpect(jsonPath("$.data.content[0].password").doesNotExist());
+    }
+
+    @Test
+    @WithMockUser(authorities = "ADMIN")
+    void testViewUsers_Slice() throws Exception {
+        mockMvc.perform(get("/api/v1/users")
+                        .param("slice", "true")
+                        .param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").value("All Stored users"))
+                .andExpect(jsonPath("$.data.content.length()").value(1))
+                .andExpect(jsonPath("$.data.hasNext").value(true))
+                .andExpect(jsonPath("$.data.totalElements").doesNotExist());
     }
 
     @Test
@@ -361,4 +438,10 @@ public class UserControllerTest {
                         .param("size", "10"))
                 .andExpect(status().isForbidden());
     }
+
+    private OutboundMail queuedMailTo(String recipient) {
+        return outboundMailRepository.findAll().stream()
+                .filter(mail -> recipient.equals(mail.getRecipient()))
+                .findFirst().orElseThrow();
+    }
 }
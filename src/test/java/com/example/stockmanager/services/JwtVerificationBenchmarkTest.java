@@ -0,0 +1,73 @@
+package com.example.stockmanager.services;
+
+import com.example.stockmanager.services.Impl.JwtServiceImpl;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.util.Date;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Cost of the JWT checks JwtAuthenticationFilter runs per request. Excluded from the default build, run with:
+// mvn test -DexcludedGroups= -Dgroups=benchmark
+@Tag("benchmark")
+class JwtVerificationBenchmarkTest {
+
+    private static final String SECRET = "dGVzdC1qd3Qtc2VjcmV0LWtleS1mb3ItdGVzdGluZy1wdXJwb3Nlcy1vbmx5LTMyYnl0ZXM=";
+    private static final int ITERATIONS = 200_000;
+
+    private final UserDetails user = User.withUsername("admin@test.com").password("unused").authorities("ADMIN").build();
+
+    @Test
+    void filterHotPath() {
+        JwtServiceImpl cached = jwtService(1024);
+        JwtServiceImpl uncached = jwtService(0);
+        String token = cached.generateToken(user);
+
+        // what the filter did before: three parses, each decoding the secret and building a parser
+        Predicate<String> legacy = jwt -> {
+            String username = legacyClaims(jwt).getSubject();
+            return legacyClaims(jwt).getSubject().equals(username) && !legacyClaims(jwt).getExpiration().before(new Date());
+        };
+        Predicate<String> singleParse = jwt -> uncached.isTokenValid(uncached.verify(jwt), user);
+        Predicate<String> cachedVerify = jwt -> cached.isTokenValid(cached.verify(jwt), user);
+
+        // warm up every path before measuring
+        measure(legacy, token);
+        measure(singleParse, token);
+        measure(cachedVerify, token);
+
+        System.out.printf("JWT filter checks: legacy %.0f ns/op, single parse %.0f ns/op, cached %.0f ns/op%n",
+                measure(legacy, token), measure(singleParse, token), measure(cachedVerify, token));
+    }
+
+    private double measure(Predicate<String> check, String token) {
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            assertTrue(check.test(token));
+        }
+        return (System.nanoTime() - start) / (double) ITERATIONS;
+    }
+
+    private JwtServiceImpl jwtService(int cacheSize) {
+        JwtServiceImpl service = new JwtServiceImpl();
+        ReflectionTestUtils.setField(service, "SECRET_KEY", SECRET);
+        ReflectionTestUtils.setField(service, "verifiedCacheSize", cacheSize);
+        ReflectionTestUtils.invokeMethod(service, "init");
+        return service;
+    }
+
+    private Claims legacyClaims(String token) {
+        SecretKey key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+        return Jwts.parser().verifyWith(key).build().parseSignedClaims(token).getPayload();
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.stockmanager.services;
+
+import com.example.stockmanager.dtos.SalesDto;
+import com.example.stockmanager.entities.ContainerWeights;
+import com.example.stockmanager.entities.Stock;
+import com.example.stockmanager.repositories.SalesRepository;
+import com.example.stockmanager.repositories.StockRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Receipts recorded line by line against one batch per receipt. Excluded from the default build, run with:
+// mvn test -DexcludedGroups= -Dgroups=benchmark
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = "spring.jpa.show-sql=false")
+class SalesBatchBenchmarkTest {
+
+    private static final int RECEIPTS = 300;
+    private static final int LINES = 10;
+
+    @Autowired
+    private SalesServices salesService;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private SalesRepository salesRepository;
+
+    @AfterEach
+    void tearDown() {
+        salesRepository.deleteAllInBatch();
+        stockRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void receiptThroughput() {
+        List<Stock> items = new ArrayList<>();
+        for (int i = 0; i < LINES; i++) {
+            Stock stock = new Stock("BB" + i, "bench item " + i, 1_000_000, "Benchmark Container");
+            stock.setWeight(ContainerWeights.KG_75);
+            items.add(stock);
+        }
+        stockRepository.insertAll(items);
+        List<SalesDto.AddSalesDto> receipt = items.stream().map(SalesBatchBenchmarkTest::line).toList();
+
+        // warm up both paths
+        for (int i = 0; i < 50; i++) {
+            receipt.forEach(salesService::addSales);
+            salesService.addSalesBatch(new SalesDto.AddSalesBatchDto(receipt));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < RECEIPTS; i++) {
+            receipt.forEach(salesService::addSales);
+        }
+        long lineByLine = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < RECEIPTS; i++) {
+            salesService.addSalesBatch(new SalesDto.AddSalesBatchDto(receipt));
+        }
+        long batched = System.nanoTime() - start;
+
+        System.out.printf("Receipts of %d lines: line by line %.0f receipts/s, batched %.0f receipts/s (%.1fx)%n",
+                LINES, RECEIPTS / (lineByLine / 1e9), RECEIPTS / (batched / 1e9), (double) lineByLine / batched);
+    }
+
+    private static SalesDto.AddSalesDto line(Stock stock) {
+        SalesDto.AddSalesDto line = new SalesDto.AddSalesDto();
+        line.setDate(LocalDate.now());
+        line.setCode(stock.getCode());
+        line.setName(stock.getName());
+        line.setQuantity(1);
+        line.setPrice(10.0);
+        line.setTotalPrice(10.0);
+        line.setWeight(stock.getWeight());
+        line.setContainerName(stock.getContainer_name());
+        return line;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.stockmanager.services;
+
+import com.example.stockmanager.dtos.SalesDto;
+import com.example.stockmanager.entities.Sales;
+import com.example.stockmanager.mappers.SalesMapper;
+import com.example.stockmanager.repositories.SalesRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.jpa.HibernateHints;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Heap allocated per sales listing: read-only entities copied through SalesMapper vs. the DTO projection.
+// Excluded from the default build, run with:
+// mvn test -DexcludedGroups= -Dgroups=benchmark
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = "spring.jpa.show-sql=false")
+class SalesListingAllocationBenchmarkTest {
+
+    private static final int ROWS = 20_000;
+    private static final int PAGE = 500;
+    private static final int ITERATIONS = 200;
+
+    @Autowired
+    private SalesRepository salesRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        List<Object[]> rows = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(new Object[]{UUID.randomUUID(), Date.valueOf(LocalDate.now().minusDays(i % 900)), "ST" + i,
+                    "Item " + i, 1 + i % 7, 100.0, 100.0 * (1 + i % 7), "KG_75", "Container " + i % 40});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO sales (id, date, code, name, quantity, price, total_price, weight, container_name) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+    }
+
+    @AfterEach
+    void tearDown() {
+        salesRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void listingAllocations() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        Supplier<List<SalesDto.ViewSalesDto>> entities = () -> readOnly.execute(status -> entityManager
+                .createQuery("SELECT s FROM Sales s ORDER BY s.date DESC, s.id DESC", Sales.class)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .setMaxResults(PAGE)
+                .getResultList()
+                .stream()
+                .map(SalesMapper::map)
+                .toList());
+        Supplier<List<SalesDto.ViewSalesDto>> projection = () -> readOnly.execute(status -> salesRepository.getSalesFirst(Limit.of(PAGE)));
+
+        assertEquals(PAGE, entities.get().size());
+        assertEquals(PAGE, projection.get().size());
+
+        // warm up both paths before measuring, then alternate so JIT state is comparable
+        measure(entities);
+        measure(projection);
+        long entityBytes = measure(entities);
+        long projectionBytes = measure(projection);
+
+        System.out.printf("Sales listing of %d rows: entities + mapper %,d bytes/request, projection %,d bytes/request (%.0f%% less)%n",
+                PAGE, entityBytes, projectionBytes, 100.0 * (entityBytes - projectionBytes) / entityBytes);
+    }
+
+    private long measure(Supplier<List<SalesDto.ViewSalesDto>> listing) {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            listing.get();
+        }
+        return (threads.getThreadAllocatedBytes(threadId) - before) / ITERATIONS;
+    }
+}
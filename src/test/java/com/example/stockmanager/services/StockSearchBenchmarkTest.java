@@ -0,0 +1,107 @@
+package com.example.stockmanager.services;
+
+import com.example.stockmanager.entities.ContainerWeights;
+import com.example.stockmanager.entities.Stock;
+import com.example.stockmanager.repositories.StockRepository;
+import com.example.stockmanager.services.Impl.ArticleIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Latency of the stock search over a 100k line catalogue. Excluded from the default build, run with:
+// mvn test -DexcludedGroups= -Dgroups=benchmark
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = "spring.jpa.show-sql=false")
+class StockSearchBenchmarkTest {
+
+    private static final int SKUS = 100_000;
+    private static final int ROUNDS = 1_000;
+    private static final long BUDGET_NANOS = 10_000_000;
+
+    private static final String[] BRANDS = {"Acme", "Golden", "Sunrise", "Royal", "Prime", "Valley", "Harvest",
+            "Ocean", "Mountain", "Crown", "Silver", "Green", "Delta", "Summit", "Tropic", "Nordic"};
+    private static final String[] PRODUCTS = {"Sugar", "Rice", "Flour", "Beans", "Lentils", "Maize", "Wheat",
+            "Coffee", "Tea", "Salt", "Oats", "Barley", "Millet", "Sorghum", "Peas", "Cocoa", "Cashews", "Peanuts",
+            "Sesame", "Soybeans", "Chickpeas", "Pepper", "Ginger", "Cinnamon", "Cloves", "Cardamom", "Vanilla"};
+    private static final String[] VARIANTS = {"Brown", "White", "Organic", "Refined", "Raw", "Roasted", "Ground",
+            "Whole", "Premium", "Export", "Grade A", "Grade B", "Fine", "Coarse", "Polished", "Parboiled"};
+    private static final String[] QUERIES = {"s", "su", "sug", "sugar", "suger", "brwn sugar", "golden rice",
+            "organic coffee", "cardamon", "sku4242", "sku12", "container 17", "prime roasted peanuts", "zzzz"};
+
+    @Autowired
+    private StockServices stockService;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private ArticleIndex articleIndex;
+
+    @AfterEach
+    void tearDown() {
+        stockRepository.deleteAllInBatch();
+        articleIndex.reload();
+    }
+
+    @Test
+    void searchLatency() {
+        Random random = new Random(42);
+        List<Stock> batch = new ArrayList<>();
+        for (int i = 1; i <= SKUS; i++) {
+            Stock stock = new Stock("SKU" + i, name(i), 1 + random.nextInt(500), "Container " + (1 + random.nextInt(500)));
+            stock.setWeight(ContainerWeights.values()[random.nextInt(ContainerWeights.values().length)]);
+            batch.add(stock);
+            if (batch.size() == 5_000) {
+                stockRepository.insertAll(batch);
+                batch.clear();
+            }
+        }
+        articleIndex.reload();
+
+        for (int i = 0; i < ROUNDS; i++) {
+            for (String query : QUERIES) stockService.search(query, null);
+        }
+        assertFalse(stockService.search("suger", null).isEmpty());
+
+        long worst = 0;
+        for (String query : QUERIES) {
+            long[] nanos = new long[ROUNDS];
+            // keeps the collection of the catalogue load out of the numbers
+            System.gc();
+            for (int i = 0; i < ROUNDS; i++) {
+                long start = System.nanoTime();
+                stockService.search(query, null);
+                nanos[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(nanos);
+            long p99 = nanos[ROUNDS * 99 / 100];
+            worst = Math.max(worst, p99);
+            System.out.printf("Stock search over %d lines, %-22s p50 %.2f ms, p99 %.2f ms%n",
+                    SKUS, "\"" + query + "\":", nanos[ROUNDS / 2] / 1e6, p99 / 1e6);
+        }
+        assertTrue(worst < BUDGET_NANOS, "p99 search latency " + worst / 1e6 + " ms is over the 10 ms budget");
+    }
+
+    // every combination once, so no two lines share a lookup key
+    private static String name(int i) {
+        int variant = i / BRANDS.length;
+        int product = variant / VARIANTS.length;
+        int size = product / PRODUCTS.length;
+        return BRANDS[i % BRANDS.length] + " " + VARIANTS[variant % VARIANTS.length] + " "
+                + PRODUCTS[product % PRODUCTS.length] + " " + (1 + size % 50) + "kg";
+    }
+}
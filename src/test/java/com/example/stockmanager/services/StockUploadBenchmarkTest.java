@@ -0,0 +1,78 @@
+package com.example.stockmanager.services;
+
+import com.example.stockmanager.repositories.StockRepository;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Throughput of the stock file import. Excluded from the default build, run with:
+// mvn test -DexcludedGroups= -Dgroups=benchmark
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = "spring.jpa.show-sql=false")
+class StockUploadBenchmarkTest {
+
+    private static final int ROWS = 20_000;
+
+    @Autowired
+    private StockServices stockService;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @AfterEach
+    void tearDown() {
+        stockRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void uploadThroughput() throws Exception {
+        stockService.uploadStockFile(manifest(500, "warmup"));
+
+        MockMultipartFile manifest = manifest(ROWS, "item");
+        long start = System.nanoTime();
+        assertEquals(ROWS, stockService.uploadStockFile(manifest));
+        long inserted = System.nanoTime();
+        // the same manifest again only increments existing rows
+        assertEquals(ROWS, stockService.uploadStockFile(manifest));
+        long updated = System.nanoTime();
+
+        System.out.printf("Stock upload of %d rows: insert %.0f rows/s, update %.0f rows/s%n",
+                ROWS, ROWS / ((inserted - start) / 1e9), ROWS / ((updated - inserted) / 1e9));
+    }
+
+    private MockMultipartFile manifest(int rows, String prefix) throws Exception {
+        try (XSSFWorkbook workbook = new XSSFWorkbook();
+             ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
+            Sheet sheet = workbook.createSheet("Stock");
+            Row header = sheet.createRow(0);
+            String[] headers = {"code", "name", "quantity", "container_name", "weight"};
+            for (int i = 0; i < headers.length; i++) {
+                header.createCell(i).setCellValue(headers[i]);
+            }
+            for (int r = 1; r <= rows; r++) {
+                Row row = sheet.createRow(r);
+                row.createCell(0).setCellValue(prefix.toUpperCase() + r);
+                row.createCell(1).setCellValue(prefix + " " + r);
+                row.createCell(2).setCellValue(5);
+                row.createCell(3).setCellValue("Benchmark Container");
+                row.createCell(4).setCellValue("KG_75");
+            }
+            workbook.write(outputStream);
+            return new MockMultipartFile("file", "manifest.xlsx", null, outputStream.toByteArray());
+        }
+    }
+}